@@ -1,5 +1,7 @@
 package org.frc2018;
 
+import org.frc2018.path.PathTracker;
+
 public class Constants {
 
 
@@ -10,6 +12,9 @@ public class Constants {
 
     public static final int GYRO_PORT = 10;
 
+    public static final boolean RIGHT_INVERTED = true; // right side setInverted
+    public static final boolean RIGHT_SENSOR_PHASE = false; // right master setSensorPhase
+
     public static final double MAX_SETPOINT = 120.0; // inches per second
 
     public static final double WHEEL_DIAMETER = 6.0;
@@ -17,10 +22,28 @@ public class Constants {
     public static final double WHEEL_CIR = WHEEL_DIAMETER * Math.PI;
     public static final int TALON_UPDATE_PERIOD_MS = 5;
     public static final double TRACK_WIDTH = 20.0; // inches
+    public static final double LOOP_PERIOD = 0.005; // seconds
+
+    // subsystem scheduler, rates are rounded to whole loop periods
+    public static final double SCHEDULER_TICK_BUDGET_US = 3000; // non critical work is shed past this
+    public static final double DRIVE_RATE_HZ = 200.0;
+    public static final double DRIVE_BUDGET_US = 1500;
+    public static final double TELEMETRY_SAMPLE_RATE_HZ = 20.0;
+    public static final double TELEMETRY_BUDGET_US = 200;
+    public static final double DASHBOARD_UPDATE_BUDGET_US = 300;
 
     // pid constants
     public static final double CLOSED_LOOP_RAMP = 0.0;
 
+    // talon profile slots, each gain set is written once at startup
+    public static final int    VELOCITY_SLOT = 0;
+    public static final int    POSITION_SLOT = 1;
+    public static final int    PROFILE_SLOT = 2;
+    public static final int    TURN_SLOT = 3; // right master aux loop
+    public static final int    PID_PRIMARY = 0;
+    public static final int    PID_TURN = 1;
+    public static final int    MODE_SWITCH_BUDGET_US = 500; // warn if a mode change takes longer
+
     public static final double VEL_kP = 10.0;
     public static final double VEL_kI = 0.0;
     public static final double VEL_kD = 0.0;
@@ -36,6 +59,117 @@ public class Constants {
     public static final int    POS_MAX_VELO = 10000; // encoder ticks per 100ms
     public static final int    POS_MAX_ACCEL = 1000; // encoder ticks per 100ms
 
+    // right master heading loop on the pigeon, error in tenths of a degree
+    public static final double TURN_kP = 2.0;
+    public static final double TURN_kI = 0.0;
+    public static final double TURN_kD = 4.0;
+    public static final double TURN_kF = 0.0;
+    public static final int    TURN_IZONE = 200;
+    public static final int    REMOTE_LEFT_ENCODER = 0; // remote sensor ordinals on the right master
+    public static final int    REMOTE_PIGEON = 1;
+    public static final int    PIGEON_UNITS_PER_ROTATION = 8192;
+    public static final int    PIGEON_YPR_PERIOD_MS = 5;
+    public static final double TURN_TOLERANCE = 2.0; // degrees
+    public static final double TURN_APPROACH = 10.0; // degrees
+    public static final double DRIVE_STRAIGHT_TOLERANCE = 1.0; // inches
+    public static final double DRIVE_STRAIGHT_APPROACH = 12.0; // inches
+
+    public static final double PROFILE_kP = 1.0;
+    public static final double PROFILE_kI = 0.0;
+    public static final double PROFILE_kD = 0.0;
+    public static final double PROFILE_kF = 0.0;
+
+    // talon motion profile streaming
+    public static final int    PROFILE_DT_MS = 10; // point duration, must be a talon TrajectoryDuration
+    public static final int    PROFILE_MIN_BUFFERED_POINTS = 10; // points in the talon before enabling
+    public static final int    PROFILE_BATCH_POINTS = 20; // most points pushed per feeder run
+    public static final int    PROFILE_MAX_LEAD_POINTS = 20; // most points buffered ahead of execution, more than PROFILE_MIN_BUFFERED_POINTS
+    public static final double PROFILE_kALONG = 0.5; // inches of offset per inch of along-track error
+    public static final double PROFILE_kLATERAL = 0.01; // radians of turn per inch of cross-track error
+    public static final double PROFILE_kHEADING = 0.5; // radians of turn per radian of heading error
+    public static final double PROFILE_MAX_CORRECTION = 6.0; // inches
+
+    // PoseEstimator noise
+    public static final double POSE_WHEEL_VARIANCE = 0.01; // inches^2 per inch a wheel travels
+    public static final double POSE_GYRO_VARIANCE = 1e-6; // radians^2, each gyro reading
+    public static final double POSE_FIX_GATE = 3.0; // standard deviations beyond which a fix is rejected
+
+    // path trackers, Drive makes a PATH_TRACKER for each path it drives
+    public static final PathTracker.Type PATH_TRACKER = PathTracker.Type.PURE_PURSUIT;
     public static final double LOOK_AHEAD_DISTANCE = 16.0; // inches
+    public static final double ADAPTIVE_LOOK_AHEAD_MIN = 10.0; // inches
+    public static final double ADAPTIVE_LOOK_AHEAD_MAX = 30.0; // inches
+    public static final double ADAPTIVE_LOOK_AHEAD_TIME = 0.25; // seconds of travel at the path velocity
+    public static final double RAMSETE_B = 0.0013; // 1 / in^2, the usual 2 / m^2
+    public static final double RAMSETE_ZETA = 0.7;
+
+    // OverloadAwareTracker, wraps Drive's tracker and drops to cheaper modes while a tick overruns
+    public static final boolean TRACKER_OVERLOAD_ENABLED = true;
+    public static final double TRACKER_BUDGET_US = 100.0; // most a tracker tick should take
+    public static final int    TRACKER_SMALL_WINDOW = 8; // points the closest point search looks ahead below FULL
+    public static final int    TRACKER_REUSE_SEGMENTS = 4; // segments the lookahead is looked for on at REUSE_SEGMENT
+    public static final int    TRACKER_SETTLE_TICKS = 5; // ticks after dropping a level before dropping another
+    public static final int    TRACKER_RECOVER_TICKS = 50; // calm ticks in a row before climbing a level
+    public static final double TRACKER_RECOVER_RATIO = 0.5; // fraction of the budget a calm tick stays under
+    public static final int    TRACKER_MAX_HELD_TICKS = 3; // most ticks in a row a setpoint is held
+
+    // path generator limits, as in PathFinder/config.ini, for profiles made on the robot like PathViews.reversed
+    public static final double PATH_TURNING_CONST = 6.0; // in/s per inch of turn radius
+    public static final double PATH_MAX_ACCEL = 70.0; // in/s^2
+
+    // Precision.SIMPLIFIED path storage
+    public static final double PATH_SIMPLIFY_TOLERANCE = 0.25; // inches a rebuilt point may move
+    public static final double PATH_SIMPLIFY_VELOCITY_TOLERANCE = 1.0; // in/s a rebuilt velocity may change
+
+    public static final long   PATH_CSV_PARALLEL_BYTES = 4L << 20; // files at least this big are parsed on all cores
+
+    // CompositePath
+    public static final int    PATH_SEARCH_WINDOW = 32; // points searched past the last closest point each query
+    public static final double PATH_JOIN_BLEND_DISTANCE = 24.0; // inches before a join where the next segment's speed is held
+
+    // PathRecorder
+    public static final String PATH_RECORD_DIRECTORY = "/home/lvuser/paths/recorded";
+    public static final double PATH_RECORD_SECONDS = 150.0; // longest recording, sets the buffer size
+    public static final double PATH_RECORD_SPACING = 6.0; // inches between points, same as the path generator
+    public static final double PATH_RECORD_STOPPED_VELOCITY = 3.0; // in/s below which the robot counts as stopped
+    public static final double PATH_RECORD_MIN_VELOCITY = 12.0; // in/s floor on recorded velocities
+
+    // path smoothing, same meaning as POINT_INJECTION in PathFinder/config.ini
+    public static final double PATH_SMOOTH_WEIGHT_DATA = 0.2;
+    public static final double PATH_SMOOTH_WEIGHT_SMOOTH = 0.8;
+    public static final double PATH_SMOOTH_TOLERANCE = 0.001; // total change per sweep of the reference smoother
+
+    // time indexed trajectory following
+    public static final double TRAJECTORY_DT = 0.005; // seconds between samples
+    public static final double TRAJECTORY_MIN_VELOCITY = 6.0; // inches per second, floor used when timing the path
+    public static final double TRAJECTORY_kALONG = 2.0; // (in/s) per inch of along-track error
+    public static final double TRAJECTORY_kLATERAL = 0.02; // (rad/s) per inch of cross-track error
+    public static final double TRAJECTORY_kHEADING = 3.0; // (rad/s) per radian of heading error
+
+    // telemetry
+    public static final int    TELEMETRY_PORT = 5800;
+    public static final double TELEMETRY_FRAME_RATE_HZ = 20.0;
+    public static final int    TELEMETRY_QUEUE_CAPACITY = 200; // samples per client, ten seconds at the sample rate
+
+    // shared memory state for other processes on the roboRIO
+    public static final boolean STATE_CHANNEL_ENABLED = true;
+    public static final String  STATE_CHANNEL_PATH = "/dev/shm/frc2018_state";
+    public static final double  STATE_CHANNEL_BUDGET_US = 20;
+    public static final int     STATE_CHANNEL_READ_RETRIES = 100; // before a reader gives up on a busy writer
+
+    // dashboard metrics, only values that moved more than their deadband are sent
+    public static final double DASHBOARD_RATE_HZ = 10.0;
+    public static final double DASHBOARD_POSITION_DEADBAND = 0.5; // inches
+    public static final double DASHBOARD_HEADING_DEADBAND = 0.5; // degrees
+    public static final double DASHBOARD_VELOCITY_DEADBAND = 1.0; // inches per second
+
+    // tick logging for offline replay
+    public static final boolean TICK_LOG_ENABLED = true;
+    public static final String  TICK_LOG_DIRECTORY = "/home/lvuser/logs";
+    public static final int     TICK_LOG_CAPACITY = 1000; // rows buffered between flushes
+
+    // jit warm-up of the path following code in robotInit
+    public static final boolean WARMUP_ENABLED = true;
+    public static final int     WARMUP_TICKS = 20000; // simulated loop ticks, enough for C2 to compile the hot paths
 
 }
\ No newline at end of file
@@ -0,0 +1,333 @@
+package org.frc2018;
+
+import org.frc2018.math.Matrix3;
+
+/**
+ * Extended Kalman filter for the robot's pose (x, y, heading) with its 3x3 covariance.
+ *
+ * Each update predicts the pose from how far each wheel went, with a variance that grows
+ * with the distance, then corrects the heading with the gyro's, which doesn't accumulate
+ * error the way the encoders' turn does. A wheel slipping shows up as a heading the gyro
+ * disagrees with and only briefly moves the position.
+ *
+ * Absolute fixes of position or heading, for example from vision, are folded in with
+ * {@link #correctPosition} and {@link #correctHeading}. A fix further than
+ * {@link Constants#POSE_FIX_GATE} standard deviations from the estimate is rejected. Any
+ * change a fix makes to the heading moves the gyro's zero with it, so the next gyro reading
+ * doesn't pull the heading back.
+ *
+ * Heading uses the gyro's convention, 0 along +y and counter clockwise positive, in
+ * radians and not wrapped. Nothing is allocated after construction.
+ */
+public class PoseEstimator {
+
+    /**
+     * Doubles in a {@link #getState} snapshot.
+     */
+    public static final int STATE_SIZE = 17;
+
+    private double m_x = 0;
+    private double m_y = 0;
+    private double m_heading = 0;
+
+    private final double[] m_covariance = new double[9];
+    private final double[] m_jacobian = new double[9];
+    private final double[] m_scratch = new double[9];
+
+    private double m_last_left = 0;
+    private double m_last_right = 0;
+    private double m_last_gyro = 0;
+    private double m_gyro_heading = 0; // radians, unwrapped and offset by any fixes
+    private boolean m_gyro_seen = false;
+
+    /**
+     * Updates from cumulative encoder distances and the gyro angle. The first update after
+     * construction or {@link #reset()} takes its heading from the gyro.
+     *
+     * @param left_distance inches
+     * @param right_distance inches
+     * @param gyro_angle degrees, counter clockwise positive, may be wrapped
+     */
+    public void update(double left_distance, double right_distance, double gyro_angle) {
+        double gyro = Math.toRadians(gyro_angle);
+        if(!m_gyro_seen) {
+            m_heading = gyro;
+            m_gyro_heading = gyro;
+            m_last_gyro = gyro;
+            m_gyro_seen = true;
+        }
+        m_gyro_heading += wrapAngle(gyro - m_last_gyro);
+        m_last_gyro = gyro;
+        updateEncoders(left_distance, right_distance);
+    }
+
+    /**
+     * Updates from cumulative encoder distances and the gyro rate.
+     *
+     * @param gyro_rate degrees per second, counter clockwise positive
+     * @param dt seconds since the last update
+     */
+    public void updateWithRate(double left_distance, double right_distance, double gyro_rate, double dt) {
+        m_gyro_heading += Math.toRadians(gyro_rate) * dt;
+        updateEncoders(left_distance, right_distance);
+    }
+
+    private void updateEncoders(double left_distance, double right_distance) {
+        double left_delta = left_distance - m_last_left;
+        double right_delta = right_distance - m_last_right;
+        m_last_left = left_distance;
+        m_last_right = right_distance;
+        predict(left_delta, right_delta);
+        correctHeadingUngated(m_gyro_heading, Constants.POSE_GYRO_VARIANCE);
+    }
+
+    /**
+     *
+     * @param left_delta inches the left wheel moved
+     * @param right_delta inches the right wheel moved
+     */
+    private void predict(double left_delta, double right_delta) {
+        double left_variance = Constants.POSE_WHEEL_VARIANCE * Math.abs(left_delta);
+        double right_variance = Constants.POSE_WHEEL_VARIANCE * Math.abs(right_delta);
+        double distance = (left_delta + right_delta) / 2.0;
+        double turn = (right_delta - left_delta) / Constants.TRACK_WIDTH;
+        double distance_variance = (left_variance + right_variance) / 4.0;
+        double turn_variance = (left_variance + right_variance) / (Constants.TRACK_WIDTH * Constants.TRACK_WIDTH);
+        double cross_variance = (right_variance - left_variance) / (2.0 * Constants.TRACK_WIDTH);
+
+        // move along the chord at the middle heading
+        double mid_heading = m_heading + turn / 2.0;
+        double sin = Math.sin(mid_heading);
+        double cos = Math.cos(mid_heading);
+        m_x -= distance * sin;
+        m_y += distance * cos;
+        m_heading += turn;
+
+        // P = F P F^T + G Q G^T with F the jacobian in the pose and G in (distance, turn)
+        Matrix3.identity(m_jacobian);
+        m_jacobian[2] = -distance * cos;
+        m_jacobian[5] = -distance * sin;
+        Matrix3.multiply(m_jacobian, m_covariance, m_scratch);
+        Matrix3.multiplyTransposed(m_scratch, m_jacobian, m_covariance);
+
+        // rows of G
+        double a0 = -sin, b0 = -distance * cos / 2.0;
+        double a1 = cos, b1 = -distance * sin / 2.0;
+        double[] p = m_covariance;
+        p[0] += noise(a0, b0, a0, b0, distance_variance, cross_variance, turn_variance);
+        p[1] += noise(a0, b0, a1, b1, distance_variance, cross_variance, turn_variance);
+        p[2] += noise(a0, b0, 0, 1, distance_variance, cross_variance, turn_variance);
+        p[4] += noise(a1, b1, a1, b1, distance_variance, cross_variance, turn_variance);
+        p[5] += noise(a1, b1, 0, 1, distance_variance, cross_variance, turn_variance);
+        p[8] += turn_variance;
+        p[3] = p[1];
+        p[6] = p[2];
+        p[7] = p[5];
+    }
+
+    /**
+     *
+     * @return entry of G Q G^T from rows (a_i, b_i) and (a_j, b_j) of G
+     */
+    private static double noise(double ai, double bi, double aj, double bj, double distance_variance,
+            double cross_variance, double turn_variance) {
+        return ai * aj * distance_variance + (ai * bj + bi * aj) * cross_variance + bi * bj * turn_variance;
+    }
+
+    /**
+     * Folds in an absolute position fix.
+     *
+     * @param x inches
+     * @param y inches
+     * @param variance of the fix in each axis, inches squared
+     * @return false if the fix was too far from the estimate and was ignored
+     */
+    public boolean correctPosition(double x, double y, double variance) {
+        double[] p = m_covariance;
+        double s00 = p[0] + variance;
+        double s01 = p[1];
+        double s11 = p[4] + variance;
+        double determinant = s00 * s11 - s01 * s01;
+        if(determinant <= 0) return false;
+        double i00 = s11 / determinant;
+        double i01 = -s01 / determinant;
+        double i11 = s00 / determinant;
+
+        double dx = x - m_x;
+        double dy = y - m_y;
+        if(dx * (i00 * dx + i01 * dy) + dy * (i01 * dx + i11 * dy) > Constants.POSE_FIX_GATE * Constants.POSE_FIX_GATE) {
+            return false;
+        }
+
+        // K = P H^T S^-1, H picks x and y
+        double k00 = p[0] * i00 + p[1] * i01, k01 = p[0] * i01 + p[1] * i11;
+        double k10 = p[3] * i00 + p[4] * i01, k11 = p[3] * i01 + p[4] * i11;
+        double k20 = p[6] * i00 + p[7] * i01, k21 = p[6] * i01 + p[7] * i11;
+        double heading_change = k20 * dx + k21 * dy;
+        m_x += k00 * dx + k01 * dy;
+        m_y += k10 * dx + k11 * dy;
+        m_heading += heading_change;
+        m_gyro_heading += heading_change;
+
+        // P = P - K H P, H P is the first two rows of P
+        double r00 = p[0], r01 = p[1], r02 = p[2];
+        double r10 = p[3], r11 = p[4], r12 = p[5];
+        p[0] -= k00 * r00 + k01 * r10;
+        p[1] -= k00 * r01 + k01 * r11;
+        p[2] -= k00 * r02 + k01 * r12;
+        p[3] -= k10 * r00 + k11 * r10;
+        p[4] -= k10 * r01 + k11 * r11;
+        p[5] -= k10 * r02 + k11 * r12;
+        p[6] -= k20 * r00 + k21 * r10;
+        p[7] -= k20 * r01 + k21 * r11;
+        p[8] -= k20 * r02 + k21 * r12;
+        Matrix3.symmetrize(p);
+        return true;
+    }
+
+    /**
+     * Folds in an absolute heading fix.
+     *
+     * @param heading radians, counter clockwise positive
+     * @param variance of the fix, radians squared
+     * @return false if the fix was too far from the estimate and was ignored
+     */
+    public boolean correctHeading(double heading, double variance) {
+        double s = m_covariance[8] + variance;
+        if(s <= 0) return false;
+        double innovation = wrapAngle(heading - m_heading);
+        if(innovation * innovation / s > Constants.POSE_FIX_GATE * Constants.POSE_FIX_GATE) {
+            return false;
+        }
+        double before = m_heading;
+        correctHeadingUngated(m_heading + innovation, variance);
+        m_gyro_heading += m_heading - before;
+        return true;
+    }
+
+    private void correctHeadingUngated(double heading, double variance) {
+        double[] p = m_covariance;
+        double s = p[8] + variance;
+        double innovation = heading - m_heading;
+
+        double k0 = p[2] / s;
+        double k1 = p[5] / s;
+        double k2 = p[8] / s;
+        m_x += k0 * innovation;
+        m_y += k1 * innovation;
+        m_heading += k2 * innovation;
+
+        double r0 = p[6], r1 = p[7], r2 = p[8];
+        p[0] -= k0 * r0;
+        p[1] -= k0 * r1;
+        p[2] -= k0 * r2;
+        p[3] -= k1 * r0;
+        p[4] -= k1 * r1;
+        p[5] -= k1 * r2;
+        p[6] -= k2 * r0;
+        p[7] -= k2 * r1;
+        p[8] -= k2 * r2;
+        Matrix3.symmetrize(p);
+    }
+
+    /**
+     * Moves the estimate to a known position, keeping the heading.
+     */
+    public void setPosition(double x, double y) {
+        m_x = x;
+        m_y = y;
+        double[] p = m_covariance;
+        p[0] = 0; p[1] = 0; p[2] = 0;
+        p[3] = 0; p[4] = 0; p[5] = 0;
+        p[6] = 0; p[7] = 0;
+    }
+
+    /**
+     * Moves the estimate to a known pose.
+     *
+     * @param heading radians, counter clockwise positive
+     */
+    public void setPose(double x, double y, double heading) {
+        m_x = x;
+        m_y = y;
+        m_heading = heading;
+        Matrix3.zero(m_covariance);
+    }
+
+    /**
+     * Back to the origin with the next update taking its heading from the gyro, for after
+     * the encoders and gyro are zeroed.
+     */
+    public void reset() {
+        setPose(0, 0, 0);
+        m_last_left = 0;
+        m_last_right = 0;
+        m_last_gyro = 0;
+        m_gyro_heading = 0;
+        m_gyro_seen = false;
+    }
+
+    public double getX() {
+        return m_x;
+    }
+
+    public double getY() {
+        return m_y;
+    }
+
+    /**
+     *
+     * @return radians, counter clockwise positive, not wrapped
+     */
+    public double getHeading() {
+        return m_heading;
+    }
+
+    /**
+     *
+     * @param row 0 for x, 1 for y, 2 for heading
+     * @return covariance entry, inches and radians
+     */
+    public double getCovariance(int row, int column) {
+        return m_covariance[row * 3 + column];
+    }
+
+    /**
+     * Copies everything the next update depends on, so {@link #setState} can make another
+     * estimator continue exactly the same way.
+     *
+     * @param state at least {@link #STATE_SIZE} long
+     */
+    public void getState(double[] state) {
+        state[0] = m_x;
+        state[1] = m_y;
+        state[2] = m_heading;
+        System.arraycopy(m_covariance, 0, state, 3, 9);
+        state[12] = m_last_left;
+        state[13] = m_last_right;
+        state[14] = m_last_gyro;
+        state[15] = m_gyro_heading;
+        state[16] = m_gyro_seen ? 1 : 0;
+    }
+
+    /**
+     *
+     * @param state a snapshot from {@link #getState}
+     */
+    public void setState(double[] state) {
+        m_x = state[0];
+        m_y = state[1];
+        m_heading = state[2];
+        System.arraycopy(state, 3, m_covariance, 0, 9);
+        m_last_left = state[12];
+        m_last_right = state[13];
+        m_last_gyro = state[14];
+        m_gyro_heading = state[15];
+        m_gyro_seen = state[16] != 0;
+    }
+
+    private static double wrapAngle(double angle) {
+        return angle - 2.0 * Math.PI * Math.floor((angle + Math.PI) / (2.0 * Math.PI));
+    }
+
+}
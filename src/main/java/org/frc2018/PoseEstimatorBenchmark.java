@@ -0,0 +1,107 @@
+package org.frc2018;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Times {@link PoseEstimator} updates and fixes on a simulated drive with wheel slip and
+ * checks that an update allocates nothing. Also prints how far the estimate ends from the
+ * true pose next to plain encoder dead reckoning with the gyro heading, the old
+ * {@link Position}.
+ *
+ * Usage: PoseEstimatorBenchmark [updates]
+ */
+public class PoseEstimatorBenchmark {
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        int updates = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        Random random = new Random(5499);
+
+        // a drive at 60 in/s with a slowly changing turn, the left wheel slipping now and then
+        double[] left = new double[updates];
+        double[] right = new double[updates];
+        double[] gyro = new double[updates];
+        double[] true_x = new double[updates];
+        double[] true_y = new double[updates];
+        double x = 0, y = 0, heading = 0, left_distance = 0, right_distance = 0, turn_rate = 0;
+        double dt = Constants.LOOP_PERIOD;
+        for(int i = 0; i < updates; i++) {
+            turn_rate = Math.max(-2.0, Math.min(2.0, turn_rate + random.nextGaussian() * 0.05));
+            double distance = 60.0 * dt;
+            double turn = turn_rate * dt;
+            x -= distance * Math.sin(heading + turn / 2.0);
+            y += distance * Math.cos(heading + turn / 2.0);
+            heading += turn;
+            double slip = random.nextDouble() < 0.01 ? 0.3 : 0.0;
+            left_distance += distance - turn * Constants.TRACK_WIDTH / 2.0 + slip;
+            right_distance += distance + turn * Constants.TRACK_WIDTH / 2.0;
+            left[i] = left_distance;
+            right[i] = right_distance;
+            gyro[i] = Math.toDegrees(heading) + random.nextGaussian() * 0.01;
+            true_x[i] = x;
+            true_y[i] = y;
+        }
+
+        PoseEstimator estimator = new PoseEstimator();
+        long best_ns = Long.MAX_VALUE;
+        long allocated = 0;
+        double dead_x = 0, dead_y = 0;
+        for(int pass = 0; pass < 5; pass++) {
+            estimator.reset();
+            dead_x = 0;
+            dead_y = 0;
+            double last_left = 0, last_right = 0;
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for(int i = 0; i < updates; i++) {
+                estimator.update(left[i], right[i], gyro[i]);
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = allocatedBytes() - bytes;
+            best_ns = Math.min(best_ns, elapsed);
+
+            for(int i = 0; i < updates; i++) {
+                double distance = (left[i] - last_left + right[i] - last_right) / 2.0;
+                dead_x -= distance * Math.sin(Math.toRadians(gyro[i]));
+                dead_y += distance * Math.cos(Math.toRadians(gyro[i]));
+                last_left = left[i];
+                last_right = right[i];
+            }
+        }
+        int last = updates - 1;
+        // the few hundred bytes left are the allocation counter's own
+        System.out.printf("%d updates: %.1f ns per update, %d bytes allocated over the last pass%n",
+            updates, (double) best_ns / updates, allocated);
+        System.out.printf("final error: estimator %.2f in, dead reckoning %.2f in, position sd %.2f in%n",
+            Math.hypot(estimator.getX() - true_x[last], estimator.getY() - true_y[last]),
+            Math.hypot(dead_x - true_x[last], dead_y - true_y[last]),
+            Math.sqrt(estimator.getCovariance(0, 0) + estimator.getCovariance(1, 1)));
+
+        // fixes, every 50th update like a 4 Hz camera
+        int fixes = 0;
+        long start = System.nanoTime();
+        for(int pass = 0; pass < 5; pass++) {
+            estimator.reset();
+            for(int i = 0; i < updates; i++) {
+                estimator.update(left[i], right[i], gyro[i]);
+                if(i % 50 == 0 && estimator.correctPosition(true_x[i] + random.nextGaussian(),
+                        true_y[i] + random.nextGaussian(), 1.0)) {
+                    fixes++;
+                }
+            }
+        }
+        double per_update = (double) (System.nanoTime() - start) / (5.0 * updates);
+        sink = estimator.getX();
+        System.out.printf("with fixes: %.1f ns per update, %d of %d fixes accepted, final error %.2f in%n",
+            per_update, fixes, 5 * ((updates + 49) / 50),
+            Math.hypot(estimator.getX() - true_x[last], estimator.getY() - true_y[last]));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
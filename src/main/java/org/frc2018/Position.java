@@ -10,48 +10,65 @@ public class Position {
         return _instance;
     }
 
-    private double x, y;
-    private double last_left, last_right;
+    // fuses encoders and gyro, see PoseEstimator
+    private final PoseEstimator estimator;
 
-    private Position() {
-        x = 0;
-        y = 0;
-
-        last_left = 0;
-        last_right = 0;
+    /**
+     * The robot uses {@link #getInstance()}, separate instances are for offline simulation.
+     */
+    public Position() {
+        estimator = new PoseEstimator();
     }
 
+    /**
+     * 
+     * @param left_value cumulative left encoder distance in inches
+     * @param right_value cumulative right encoder distance in inches
+     * @param angle gyro angle in degrees
+     */
     public void update(double left_value, double right_value, double angle) {
-        angle = Math.toRadians(angle);
-        double left_delta = left_value - last_left;
-        double right_delta = right_value - last_right;
-        // System.out.println("dL:" + left_delta + " dR: " + right_delta);
-        double distance = (left_delta + right_delta) / 2.0;
-        y += distance * Math.cos(angle);
-        x -=  distance * Math.sin(angle);
-        last_left = left_value;
-        last_right = right_value;
+        estimator.update(left_value, right_value, angle);
     }
 
     public void setPosition(Vector2 pos) {
-        x = pos.x;
-        y = pos.y;
+        estimator.setPosition(pos.x, pos.y);
     }
 
     public Vector2 getPosition() {
-        return new Vector2(x, y);
+        return new Vector2(estimator.getX(), estimator.getY());
+    }
+
+    public double getX() {
+        return estimator.getX();
+    }
+
+    public double getY() {
+        return estimator.getY();
+    }
+
+    /**
+     * 
+     * @return estimated heading in degrees, counter clockwise positive, not wrapped
+     */
+    public double getHeading() {
+        return Math.toDegrees(estimator.getHeading());
+    }
+
+    /**
+     * 
+     * @return the filter behind this position, for absolute fixes and covariance
+     */
+    public PoseEstimator getEstimator() {
+        return estimator;
     }
 
     public void reset() {
-        x = 0;
-        y = 0;
-        last_left = 0;
-        last_right = 0; 
+        estimator.reset();
     }
 
     @Override
     public String toString() {
-        return String.format("Robot Position: X: %.2f, Y:%.2f ", x, y);
+        return String.format("Robot Position: X: %.2f, Y:%.2f ", getX(), getY());
     }
 
 }
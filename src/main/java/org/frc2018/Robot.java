@@ -1,11 +1,21 @@
 package org.frc2018;
 
 import org.frc2018.auto.AutoRoutineHandler;
+import org.frc2018.auto.JitWarmup;
 import org.frc2018.auto.actions.DrivePathAction;
 import org.frc2018.auto.actions.NothingAction;
 import org.frc2018.auto.routines.Routine;
+import org.frc2018.logging.LoopMonitor;
+import org.frc2018.logging.LoopMonitor.Section;
 import org.frc2018.path.Path;
+import org.frc2018.path.PathRecorder;
 import org.frc2018.subsystems.Drive;
+import org.frc2018.subsystems.SubsystemScheduler;
+import org.frc2018.subsystems.SubsystemScheduler.Priority;
+import org.frc2018.telemetry.DashboardPublisher;
+import org.frc2018.telemetry.MetricsRegistry;
+import org.frc2018.telemetry.StateChannel;
+import org.frc2018.telemetry.TelemetryServer;
 
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.XboxController;
@@ -16,14 +26,36 @@ public class Robot extends TimedRobot {
 
     private XboxController driver = new XboxController(0);
     private AutoRoutineHandler handler = null;
+    private LoopMonitor loop_monitor = LoopMonitor.getInstance();
+    private PathRecorder recorder = new PathRecorder();
+    private SubsystemScheduler scheduler = new SubsystemScheduler(1.0 / Constants.LOOP_PERIOD,
+        Constants.SCHEDULER_TICK_BUDGET_US);
 
     public Robot() {
-        super.setPeriod(0.005);
+        super.setPeriod(Constants.LOOP_PERIOD);
     }
 
     @Override
     public void robotInit() {
-        
+        // before the metrics are registered so warm-up paths don't count on the dashboard
+        if(Constants.WARMUP_ENABLED) {
+            new JitWarmup().run();
+        }
+        TelemetryServer.getInstance().start();
+        Drive.getInstance().registerMetrics(MetricsRegistry.getInstance());
+        DashboardPublisher.getInstance().start();
+        Drive drive = Drive.getInstance();
+        scheduler.add("drive", drive, Constants.DRIVE_RATE_HZ, Priority.CRITICAL, Constants.DRIVE_BUDGET_US);
+        if(Constants.STATE_CHANNEL_ENABLED && StateChannel.getInstance().start()) {
+            // every tick, publishing costs a few hundred nanoseconds
+            scheduler.add("state", drive::publishState, Constants.DRIVE_RATE_HZ, Priority.CRITICAL,
+                Constants.STATE_CHANNEL_BUDGET_US);
+        }
+        scheduler.add("telemetry", drive::publishTelemetry, Constants.TELEMETRY_SAMPLE_RATE_HZ, Priority.LOW,
+            Constants.TELEMETRY_BUDGET_US);
+        scheduler.add("dashboard", drive::outputToSmartDashboard, Constants.DASHBOARD_RATE_HZ, Priority.LOW,
+            Constants.DASHBOARD_UPDATE_BUDGET_US);
+        loop_monitor.start();
     }
 
     @Override
@@ -33,6 +65,15 @@ public class Robot extends TimedRobot {
 
     @Override
     public void disabledInit() {
+        recorder.stop();
+        if(loop_monitor.getTicks() > 0) {
+            System.out.print(loop_monitor.summarize());
+            loop_monitor.reset();
+        }
+        if(scheduler.getTicks() > 0) {
+            System.out.print(scheduler.summarize());
+            scheduler.resetStats();
+        }
         Drive.getInstance().setOpenLoop(0, 0);
         Drive.getInstance().setBrakeMode(true);
         Drive.getInstance().reset();
@@ -54,15 +95,22 @@ public class Robot extends TimedRobot {
         */
         Routine routine = new Routine();
         routine.addAction(new NothingAction(1));
-        routine.addAction(new DrivePathAction(new Path("/home/lvuser/paths/path.csv")));
+        // generated at build time from src/main/paths/example.path, see PathCompiler
+        routine.addAction(new DrivePathAction(new Path("/home/lvuser/paths/example.bpath")));
         handler = new AutoRoutineHandler(routine);
         handler.start();
     }
 
     @Override
     public void autonomousPeriodic() {
-        Drive.getInstance().update();
+        loop_monitor.startTick();
+        loop_monitor.startSection(Section.SUBSYSTEMS);
+        scheduler.tick();
+        loop_monitor.endSection(Section.SUBSYSTEMS);
+        loop_monitor.startSection(Section.ROUTINE);
         handler.update();
+        loop_monitor.endSection(Section.ROUTINE);
+        loop_monitor.endTick();
     }
 
     @Override
@@ -73,9 +121,21 @@ public class Robot extends TimedRobot {
 
     @Override
     public void teleopPeriodic() {
-        Drive.getInstance().update();
-        Drive.getInstance().setOpenLoop(-driver.getY(Hand.kLeft), -driver.getY(Hand.kRight));
-        Drive.getInstance().update();
+        loop_monitor.startTick();
+        Drive drive = Drive.getInstance();
+        drive.setOpenLoop(-driver.getY(Hand.kLeft), -driver.getY(Hand.kRight));
+        // A records a path to repeat in autonomous, B stops and writes it
+        if(driver.getAButtonPressed()) recorder.start();
+        if(driver.getBButtonPressed()) recorder.stop();
+        loop_monitor.startSection(Section.SUBSYSTEMS);
+        scheduler.tick();
+        loop_monitor.endSection(Section.SUBSYSTEMS);
+        if(recorder.isRecording()) {
+            Position position = Position.getInstance();
+            recorder.record(position.getX(), position.getY(), drive.getLastAngle(),
+                drive.getLeftVelocityInchesPerSecond(), drive.getRightVelocityInchesPerSecond());
+        }
+        loop_monitor.endTick();
     }
 
     @Override
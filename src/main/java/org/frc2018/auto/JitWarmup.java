@@ -0,0 +1,109 @@
+package org.frc2018.auto;
+
+import org.frc2018.Constants;
+import org.frc2018.auto.actions.DrivePathAction;
+import org.frc2018.auto.routines.Routine;
+import org.frc2018.path.Path;
+import org.frc2018.path.PathStorage;
+import org.frc2018.subsystems.Drive;
+
+/**
+ * Runs a synthetic path through the real path following code before the match so the
+ * first autonomous ticks run compiled code instead of the interpreter.
+ *
+ * Motor output is stubbed out with {@link Drive#setOutputEnabled}, the drive integrates its
+ * own setpoints into simulated sensors so the robot "drives" the path without moving.
+ * Routines are driven through {@link AutoRoutineHandler} back to back as fast as possible
+ * until {@link Constants#WARMUP_TICKS} ticks have run. The first tick of the first run and
+ * the first tick of a run after warm-up are timed so the effect can be seen in the log.
+ */
+public class JitWarmup {
+
+    private double m_cold_first_tick_us = 0;
+    private double m_warm_first_tick_us = 0;
+    private double m_first_tick_us = 0;
+    private int m_runs = 0;
+
+    /**
+     * Runs the warm-up and resets the drive and odometry afterwards. Must be called while
+     * the robot is disabled.
+     */
+    public void run() {
+        Drive drive = Drive.getInstance();
+        long start = System.nanoTime();
+        drive.setOutputEnabled(false);
+        try {
+            int ticks = runPath(Constants.WARMUP_TICKS);
+            m_cold_first_tick_us = m_first_tick_us;
+            while(ticks < Constants.WARMUP_TICKS) {
+                ticks += runPath(Constants.WARMUP_TICKS - ticks);
+            }
+            runPath(1);
+            m_warm_first_tick_us = m_first_tick_us;
+        } finally {
+            drive.setOutputEnabled(true);
+            drive.setOpenLoop(0, 0);
+            drive.reset();
+        }
+        System.out.printf("JIT warm-up: %d runs in %.0f ms, first tick %.1f us cold, %.1f us warm%n",
+            m_runs, (System.nanoTime() - start) / 1e6, m_cold_first_tick_us, m_warm_first_tick_us);
+    }
+
+    /**
+     * Starts a fresh routine on the synthetic path and ticks it until the path is done.
+     *
+     * @param max_ticks most ticks to run, a follower that never reaches the end still counts
+     * @return ticks run
+     */
+    private int runPath(int max_ticks) {
+        Drive.getInstance().reset();
+        Routine routine = new Routine();
+        routine.addAction(new DrivePathAction(new Path(createPath(), false)));
+        AutoRoutineHandler handler = new AutoRoutineHandler(routine);
+        handler.start();
+        m_runs++;
+
+        long start = System.nanoTime();
+        tick(handler);
+        m_first_tick_us = (System.nanoTime() - start) / 1e3;
+        int ticks = 1;
+        while(ticks < max_ticks && !Drive.getInstance().doneWithPath()) {
+            tick(handler);
+            ticks++;
+        }
+        return ticks;
+    }
+
+    private static void tick(AutoRoutineHandler handler) {
+        Drive.getInstance().update();
+        handler.update();
+    }
+
+    /**
+     *
+     * @return a gentle s curve ten feet long along +y, one point per inch
+     */
+    private static PathStorage createPath() {
+        int n = 121;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] velocities = new double[n];
+        for(int i = 0; i < n; i++) {
+            double u = (double) i / (n - 1);
+            x[i] = 6.0 * Math.sin(2.0 * Math.PI * u);
+            y[i] = 120.0 * u;
+            // never zero, the follower has to reach the last point
+            velocities[i] = 30.0 + 30.0 * Math.sin(Math.PI * u);
+        }
+        return Path.createStorage(x, y, velocities, Path.Precision.DOUBLE);
+    }
+
+    public double getColdFirstTickMicros() {
+        return m_cold_first_tick_us;
+    }
+
+    public double getWarmFirstTickMicros() {
+        return m_warm_first_tick_us;
+    }
+
+}
@@ -23,13 +23,12 @@ public class DrivePathAction implements Action {
 
     @Override
     public boolean isFinished() {
-        System.out.println("Done with path!");
         return Drive.getInstance().doneWithPath();
     }
 
     @Override
     public void done() {
-        
+        System.out.println("Done with path!");
     }
 
 
@@ -0,0 +1,42 @@
+package org.frc2018.auto.actions;
+
+import org.frc2018.Constants;
+import org.frc2018.path.Path;
+import org.frc2018.path.Trajectory;
+import org.frc2018.subsystems.Drive;
+
+public class DriveProfileAction implements Action {
+
+    private Trajectory m_trajectory;
+
+    /**
+     * Times the path at the talon point duration up front so starting the action only
+     * has to begin streaming.
+     * 
+     * @param path path to stream to the talons
+     */
+    public DriveProfileAction(Path path) {
+        m_trajectory = Trajectory.fromPath(path, Constants.PROFILE_DT_MS / 1000.0);
+    }
+
+    @Override
+    public void start() {
+        Drive.getInstance().setWantDriveProfile(m_trajectory);
+    }
+
+    @Override
+    public void update() {
+
+    }
+
+    @Override
+    public boolean isFinished() {
+        return Drive.getInstance().doneWithPath();
+    }
+
+    @Override
+    public void done() {
+        
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.frc2018.auto.actions;
+
+import org.frc2018.path.Path;
+import org.frc2018.path.Trajectory;
+import org.frc2018.subsystems.Drive;
+
+public class DriveTrajectoryAction implements Action {
+
+    private Trajectory m_trajectory;
+
+    /**
+     * Builds the trajectory up front so starting the action only hands it to Drive.
+     * 
+     * @param path path to time and follow
+     */
+    public DriveTrajectoryAction(Path path) {
+        m_trajectory = Trajectory.fromPath(path);
+    }
+
+    @Override
+    public void start() {
+        Drive.getInstance().setWantDriveTrajectory(m_trajectory);
+    }
+
+    @Override
+    public void update() {
+
+    }
+
+    @Override
+    public boolean isFinished() {
+        return Drive.getInstance().doneWithPath();
+    }
+
+    @Override
+    public void done() {
+        
+    }
+
+}
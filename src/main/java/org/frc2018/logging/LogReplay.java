@@ -0,0 +1,189 @@
+package org.frc2018.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.frc2018.Position;
+import org.frc2018.math.Vector2;
+import org.frc2018.path.Path;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+import org.frc2018.path.PathTracker;
+
+/**
+ * Re-drives {@link Position} and the logged {@link PathTracker} offline from recorded {@link TickLog}s,
+ * in the same order Drive calls them, as fast as the CPU allows. Recomputed setpoints are
+ * diffed against the recorded ones and the per-tick cost of the follower stack is measured.
+ *
+ * Usage: LogReplay &lt;log.csv | directory of logs&gt; [path.csv] [tolerance]
+ *
+ * The path defaults to the one named in each log header, rebuilt with
+ * {@link Path#fromSource}. Paths made straight from a store have no source and need the
+ * path argument. Exits with 1 if any log diverges by more than the tolerance (inches per
+ * second, default 1e-6).
+ *
+ * Each replay starts {@link Position} from the estimator state in the log header, so paths
+ * after the first of a routine replay exactly too. Logs without it start from the pose and
+ * encoder totals of their first tick and can differ by around 1e-4 in/s.
+ *
+ * The tracker runs each tick at the quality {@link org.frc2018.path.OverloadAwareTracker}
+ * picked on the robot, read from the log, since the timing that picked it can't be
+ * reproduced. Held ticks repeat the previous setpoint as they did on the robot.
+ */
+public class LogReplay {
+
+    public static class Result {
+        public String log_file;
+        public int ticks;
+        public double max_left_error;
+        public double max_right_error;
+        public double rms_error;
+        public int first_divergent_tick = -1;
+        public boolean done_mismatch;
+        public double recorded_seconds;
+        public double replay_seconds;
+        public long[] tick_nanos;
+
+        public double percentileMicros(double percentile) {
+            if(tick_nanos.length == 0) return 0;
+            long[] sorted = tick_nanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.round(percentile * (sorted.length - 1)));
+            return sorted[index] / 1e3;
+        }
+    }
+
+    /**
+     * Replays one log against the given path.
+     *
+     * @param log recorded ticks
+     * @param path freshly loaded path, its search state is consumed by the replay
+     * @param tolerance setpoint difference that counts as divergence
+     * @return the comparison and timing
+     */
+    public static Result replay(TickLog log, Path path, double tolerance) {
+        Result result = new Result();
+        result.ticks = log.size();
+        result.tick_nanos = new long[log.size()];
+
+        Position position = Position.getInstance();
+        position.reset();
+        if(log.getPose() != null) {
+            position.getEstimator().setState(log.getPose());
+        } else if(log.size() > 0) {
+            // Drive isn't reset between the paths of a routine, so start from the first
+            // tick's logged pose and take its encoder totals as the last readings
+            position.update(log.get(0, TickLog.LEFT_DISTANCE), log.get(0, TickLog.RIGHT_DISTANCE),
+                log.get(0, TickLog.GYRO_ANGLE));
+            position.setPosition(new Vector2(log.get(0, TickLog.X), log.get(0, TickLog.Y)));
+        }
+        PathTracker tracker = log.getTracker().create(path);
+        VelocitySetpoint last_setpoint = new VelocitySetpoint();
+        boolean have_setpoint = false;
+        boolean done = false;
+        double sum_squares = 0;
+
+        long replay_start = System.nanoTime();
+        for(int tick = 0; tick < log.size(); tick++) {
+            double left = log.get(tick, TickLog.LEFT_DISTANCE);
+            double right = log.get(tick, TickLog.RIGHT_DISTANCE);
+            double angle = log.get(tick, TickLog.GYRO_ANGLE);
+
+            long start = System.nanoTime();
+            position.update(left, right, angle);
+            Vector2 robot_pos = position.getPosition();
+            double left_setpoint = 0;
+            double right_setpoint = 0;
+            // the same calls OverloadAwareTracker makes at this quality
+            PathTracker.Quality quality = log.getQuality(tick);
+            boolean hold = quality == PathTracker.Quality.HOLD;
+            tracker.setQuality(hold ? PathTracker.Quality.REUSE_SEGMENT : quality);
+            if(!done && tracker.doneWithPath(robot_pos)) {
+                done = true;
+            } else if(!done) {
+                if(!hold || !have_setpoint) {
+                    VelocitySetpoint setpoint = tracker.update(robot_pos, Math.toRadians(angle));
+                    last_setpoint.left_velocity = setpoint.left_velocity;
+                    last_setpoint.right_velocity = setpoint.right_velocity;
+                    have_setpoint = true;
+                }
+                left_setpoint = last_setpoint.left_velocity;
+                right_setpoint = last_setpoint.right_velocity;
+            }
+            result.tick_nanos[tick] = System.nanoTime() - start;
+
+            boolean recorded_done = log.get(tick, TickLog.DONE) != 0;
+            if(recorded_done != done) result.done_mismatch = true;
+            double left_error = Math.abs(left_setpoint - log.get(tick, TickLog.LEFT_SETPOINT));
+            double right_error = Math.abs(right_setpoint - log.get(tick, TickLog.RIGHT_SETPOINT));
+            result.max_left_error = Math.max(result.max_left_error, left_error);
+            result.max_right_error = Math.max(result.max_right_error, right_error);
+            sum_squares += left_error * left_error + right_error * right_error;
+            if(result.first_divergent_tick < 0 && (left_error > tolerance || right_error > tolerance || recorded_done != done)) {
+                result.first_divergent_tick = tick;
+            }
+        }
+        result.replay_seconds = (System.nanoTime() - replay_start) / 1e9;
+        result.rms_error = log.size() > 0 ? Math.sqrt(sum_squares / (2 * log.size())) : 0;
+        if(log.size() > 1) {
+            result.recorded_seconds = log.get(log.size() - 1, TickLog.TIMESTAMP) - log.get(0, TickLog.TIMESTAMP);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("usage: LogReplay <log.csv | log directory> [path.csv] [tolerance]");
+            System.exit(2);
+        }
+        String path_override = args.length > 1 ? args[1] : null;
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 1e-6;
+
+        List<File> logs = new ArrayList<>();
+        File input = new File(args[0]);
+        if(input.isDirectory()) {
+            File[] files = input.listFiles((dir, name) -> name.endsWith(".csv"));
+            if(files != null) logs.addAll(Arrays.asList(files));
+            logs.sort(null);
+        } else {
+            logs.add(input);
+        }
+
+        boolean any_divergent = false;
+        for(File file : logs) {
+            TickLog log = TickLog.read(file.getPath());
+            String path_file = path_override != null ? path_override : log.getPathFile();
+            // older logs wrote "null" for paths without a file
+            if(path_file == null || path_file.equals("null")) {
+                System.err.println(file + ": the path wasn't loaded from a file so the log can't name it, give one");
+                any_divergent = true;
+                continue;
+            }
+            Path path;
+            try {
+                path = Path.fromSource(path_file, log.getBackwards());
+            } catch(IOException | IllegalArgumentException e) {
+                System.err.println(file + ": can't load path " + path_file + ": " + e.getMessage());
+                any_divergent = true;
+                continue;
+            }
+            Result result = replay(log, path, tolerance);
+            boolean divergent = result.first_divergent_tick >= 0;
+            any_divergent |= divergent;
+            System.out.printf("%s: %d ticks, %s%n", file.getName(), result.ticks, divergent
+                ? "DIVERGES at tick " + result.first_divergent_tick : "matches");
+            System.out.printf("    setpoint error: max left %.6f, max right %.6f, rms %.6f in/s%s%n",
+                result.max_left_error, result.max_right_error, result.rms_error,
+                result.done_mismatch ? ", path completion differs" : "");
+            System.out.printf("    tick cost: p50 %.2f us, p99 %.2f us, max %.2f us%n",
+                result.percentileMicros(0.5), result.percentileMicros(0.99), result.percentileMicros(1.0));
+            System.out.printf("    replayed %.2f s of driving in %.4f s (%.0fx real time)%n",
+                result.recorded_seconds, result.replay_seconds,
+                result.replay_seconds > 0 ? result.recorded_seconds / result.replay_seconds : 0);
+        }
+        System.exit(any_divergent ? 1 : 0);
+    }
+
+}
@@ -0,0 +1,253 @@
+package org.frc2018.logging;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Times every robot loop tick and works out afterwards what caused the slow ones.
+ *
+ * Garbage collections are timestamped from JMX notifications and JIT activity is
+ * tracked by sampling the total compilation time at the start and end of each tick.
+ * A tick overruns if it runs longer than the loop period or starts more than half a
+ * period late. At the end of a match {@link #summarize()} blames each overrun on a GC
+ * pause that overlapped it, else on JIT compilation that ran during it, else on our
+ * own code, naming the timed section that took longest.
+ *
+ * Ticks only write into preallocated arrays, nothing is allocated on the robot loop.
+ */
+public class LoopMonitor {
+
+    /**
+     * Parts of a tick that can be timed separately.
+     */
+    public enum Section {
+        SUBSYSTEMS,
+        FOLLOWER,
+        ROUTINE,
+    }
+
+    private static final int MAX_OVERRUNS = 1024;
+    private static final int MAX_GC_EVENTS = 1024;
+
+    private static LoopMonitor m_instance = new LoopMonitor(0.005);
+
+    public static LoopMonitor getInstance() {
+        return m_instance;
+    }
+
+    private final long m_period_ns;
+    private final CompilationMXBean m_compiler;
+    private boolean m_listening = false;
+
+    // current tick
+    private long m_tick_start_ns = 0;
+    private long m_last_tick_start_ns = 0;
+    private long m_tick_compile_ms = 0;
+    private long m_last_tick_compile_ms = 0;
+    private final long[] m_section_start_ns = new long[Section.values().length];
+    private final long[] m_section_ns = new long[Section.values().length];
+
+    // totals since the last reset
+    private long m_ticks = 0;
+    private long m_total_tick_ns = 0;
+    private long m_max_tick_ns = 0;
+    private long m_max_interval_ns = 0;
+
+    // overrunning ticks, recorded on the robot loop
+    private int m_overruns = 0;
+    private final long[] m_overrun_start_ns = new long[MAX_OVERRUNS];
+    private final long[] m_overrun_end_ns = new long[MAX_OVERRUNS];
+    private final long[] m_overrun_compile_ms = new long[MAX_OVERRUNS];
+    private final int[] m_overrun_section = new int[MAX_OVERRUNS];
+    private final long[] m_overrun_section_ns = new long[MAX_OVERRUNS];
+
+    // collections, recorded on the JMX notification thread, guarded by m_gc_lock
+    private final Object m_gc_lock = new Object();
+    private int m_gc_events = 0;
+    private final long[] m_gc_start_ms = new long[MAX_GC_EVENTS];
+    private final long[] m_gc_end_ms = new long[MAX_GC_EVENTS];
+    private long m_gc_total_ms = 0;
+    // System.nanoTime() at the zero of the gc clock, estimated from notification delivery
+    private long m_gc_clock_offset_ns = Long.MAX_VALUE;
+
+    /**
+     *
+     * @param period_s robot loop period in seconds
+     */
+    public LoopMonitor(double period_s) {
+        m_period_ns = (long) (period_s * 1e9);
+        m_compiler = ManagementFactory.getCompilationMXBean();
+    }
+
+    /**
+     * Subscribes to garbage collection notifications. Safe to call more than once.
+     */
+    public synchronized void start() {
+        if(m_listening) return;
+        NotificationListener listener = this::onNotification;
+        for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if(collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+            }
+        }
+        m_listening = true;
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if(!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) return;
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long now_ns = System.nanoTime();
+        // gc info times are milliseconds on a clock of their own. A notification is always
+        // delivered after the collection ends, so the smallest offset seen is the closest to the truth
+        long start_ms = info.getGcInfo().getStartTime();
+        long end_ms = info.getGcInfo().getEndTime();
+        synchronized(m_gc_lock) {
+            m_gc_clock_offset_ns = Math.min(m_gc_clock_offset_ns, now_ns - end_ms * 1000000L);
+            int slot = m_gc_events % MAX_GC_EVENTS;
+            m_gc_start_ms[slot] = start_ms;
+            m_gc_end_ms[slot] = end_ms;
+            m_gc_events++;
+            m_gc_total_ms += end_ms - start_ms;
+        }
+    }
+
+    private long compileTimeMs() {
+        return m_compiler != null && m_compiler.isCompilationTimeMonitoringSupported()
+            ? m_compiler.getTotalCompilationTime() : 0;
+    }
+
+    public void startTick() {
+        m_tick_start_ns = System.nanoTime();
+        m_tick_compile_ms = compileTimeMs();
+        for(int i = 0; i < m_section_ns.length; i++) m_section_ns[i] = 0;
+    }
+
+    public void startSection(Section section) {
+        m_section_start_ns[section.ordinal()] = System.nanoTime();
+    }
+
+    public void endSection(Section section) {
+        m_section_ns[section.ordinal()] += System.nanoTime() - m_section_start_ns[section.ordinal()];
+    }
+
+    public void endTick() {
+        long end_ns = System.nanoTime();
+        long duration_ns = end_ns - m_tick_start_ns;
+        long interval_ns = m_last_tick_start_ns != 0 ? m_tick_start_ns - m_last_tick_start_ns : m_period_ns;
+        long window_compile_ms = m_last_tick_start_ns != 0 ? m_last_tick_compile_ms : m_tick_compile_ms;
+        m_last_tick_start_ns = m_tick_start_ns;
+        m_last_tick_compile_ms = m_tick_compile_ms;
+
+        m_ticks++;
+        m_total_tick_ns += duration_ns;
+        m_max_tick_ns = Math.max(m_max_tick_ns, duration_ns);
+        m_max_interval_ns = Math.max(m_max_interval_ns, interval_ns);
+
+        if(duration_ns <= m_period_ns && interval_ns <= m_period_ns * 3 / 2) return;
+        if(m_overruns >= MAX_OVERRUNS) {
+            m_overruns++;
+            return;
+        }
+        // the follower runs inside Drive.update, count subsystem time without it
+        m_section_ns[Section.SUBSYSTEMS.ordinal()] -= m_section_ns[Section.FOLLOWER.ordinal()];
+        int slowest = 0;
+        for(int i = 1; i < m_section_ns.length; i++) {
+            if(m_section_ns[i] > m_section_ns[slowest]) slowest = i;
+        }
+        int i = m_overruns;
+        // a late start means the stall happened between ticks, so the window covers the gap too
+        boolean late = interval_ns > m_period_ns * 3 / 2;
+        m_overrun_start_ns[i] = late ? m_tick_start_ns - interval_ns : m_tick_start_ns;
+        m_overrun_end_ns[i] = end_ns;
+        m_overrun_compile_ms[i] = compileTimeMs() - (late ? window_compile_ms : m_tick_compile_ms);
+        m_overrun_section[i] = slowest;
+        m_overrun_section_ns[i] = m_section_ns[slowest];
+        m_overruns++;
+    }
+
+    /**
+     * Attributes every recorded overrun and formats the result.
+     *
+     * @return a multi-line report
+     */
+    public String summarize() {
+        int gc = 0, jit = 0;
+        int[] code = new int[Section.values().length];
+        long[] worst_code_ns = new long[Section.values().length];
+        long worst_gc_ns = 0;
+        int recorded = Math.min(m_overruns, MAX_OVERRUNS);
+        long gc_total_ns;
+        int gc_events;
+        synchronized(m_gc_lock) {
+            gc_total_ns = m_gc_total_ms * 1000000L;
+            gc_events = m_gc_events;
+            int stored = Math.min(m_gc_events, MAX_GC_EVENTS);
+            for(int i = 0; i < recorded; i++) {
+                long pause = -1;
+                for(int j = 0; j < stored; j++) {
+                    long start_ns = m_gc_clock_offset_ns + m_gc_start_ms[j] * 1000000L;
+                    long end_ns = m_gc_clock_offset_ns + m_gc_end_ms[j] * 1000000L;
+                    // gc times only have millisecond resolution, so allow a millisecond of slack
+                    if(start_ns <= m_overrun_end_ns[i] + 1000000L && end_ns + 1000000L >= m_overrun_start_ns[i]) {
+                        pause = Math.max(pause, end_ns - start_ns);
+                    }
+                }
+                if(pause >= 0) {
+                    gc++;
+                    worst_gc_ns = Math.max(worst_gc_ns, pause);
+                } else if(m_overrun_compile_ms[i] > 0) {
+                    jit++;
+                } else {
+                    code[m_overrun_section[i]]++;
+                    worst_code_ns[m_overrun_section[i]] = Math.max(worst_code_ns[m_overrun_section[i]], m_overrun_section_ns[i]);
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Loop monitor: %d ticks, mean %.3f ms, worst tick %.3f ms, worst interval %.3f ms%n",
+            m_ticks, m_ticks > 0 ? m_total_tick_ns / 1e6 / m_ticks : 0.0, m_max_tick_ns / 1e6, m_max_interval_ns / 1e6));
+        out.append(String.format("  %d overruns (%d recorded), %d collections totalling %.1f ms%n",
+            m_overruns, recorded, gc_events, gc_total_ns / 1e6));
+        out.append(String.format("  garbage collection: %d, longest overlapping pause %.1f ms%n", gc, worst_gc_ns / 1e6));
+        out.append(String.format("  jit compilation:    %d%n", jit));
+        for(Section section : Section.values()) {
+            out.append(String.format("  %-19s %d, longest %.3f ms%n", section.name().toLowerCase() + ":",
+                code[section.ordinal()], worst_code_ns[section.ordinal()] / 1e6));
+        }
+        return out.toString();
+    }
+
+    public long getTicks() {
+        return m_ticks;
+    }
+
+    public int getOverruns() {
+        return m_overruns;
+    }
+
+    /**
+     * Clears all samples and events, ready for the next match.
+     */
+    public void reset() {
+        m_ticks = 0;
+        m_total_tick_ns = 0;
+        m_max_tick_ns = 0;
+        m_max_interval_ns = 0;
+        m_last_tick_start_ns = 0;
+        m_overruns = 0;
+        synchronized(m_gc_lock) {
+            m_gc_events = 0;
+            m_gc_total_ms = 0;
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package org.frc2018.logging;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.frc2018.PoseEstimator;
+import org.frc2018.path.Path;
+import org.frc2018.path.PathTracker;
+
+/**
+ * Per-tick drive log recorded while following a path, and read back by {@link LogReplay}.
+ *
+ * The file starts with header lines: "# path=&lt;source&gt;" (see {@link Path#getSource}),
+ * "# backwards=&lt;true|false&gt;", "# tracker=&lt;{@link PathTracker.Type}&gt;" and "# pose="
+ * holding the {@link PoseEstimator} state from just before the first row. Then one comma
+ * separated row per tick follows in the column order below. The setpoints are the raw
+ * tracker output, before Drive scales them.
+ */
+public class TickLog {
+
+    public static final int TIMESTAMP = 0;
+    public static final int LEFT_DISTANCE = 1;
+    public static final int RIGHT_DISTANCE = 2;
+    public static final int GYRO_ANGLE = 3;
+    public static final int X = 4;
+    public static final int Y = 5;
+    public static final int LEFT_SETPOINT = 6;
+    public static final int RIGHT_SETPOINT = 7;
+    public static final int DONE = 8;
+    public static final int QUALITY = 9; // ordinal of the PathTracker.Quality the tick ran at
+    public static final int WIDTH = 10;
+
+    private static final PathTracker.Quality[] QUALITIES = PathTracker.Quality.values();
+
+    public static final String PATH_HEADER = "# path=";
+    public static final String BACKWARDS_HEADER = "# backwards=";
+    public static final String TRACKER_HEADER = "# tracker=";
+    public static final String POSE_HEADER = "# pose=";
+
+    private String m_path_file = null;
+    private boolean m_backwards = false;
+    // logs from before the header only ever drove PathFollower
+    private PathTracker.Type m_tracker = PathTracker.Type.PURE_PURSUIT;
+    private double[] m_pose = null;
+    private double[] m_rows = new double[0];
+    private int m_count = 0;
+
+    /**
+     *
+     * @param filepath log to read
+     * @return the parsed log
+     * @throws IOException if the file can't be read or a row is malformed
+     */
+    public static TickLog read(String filepath) throws IOException {
+        TickLog log = new TickLog();
+        double[] rows = new double[WIDTH * 1024];
+        int count = 0;
+        int line_number = 0;
+        try(BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                line_number++;
+                if(line.startsWith(PATH_HEADER)) {
+                    log.m_path_file = line.substring(PATH_HEADER.length()).trim();
+                    continue;
+                }
+                if(line.startsWith(BACKWARDS_HEADER)) {
+                    log.m_backwards = Boolean.parseBoolean(line.substring(BACKWARDS_HEADER.length()).trim());
+                    continue;
+                }
+                if(line.startsWith(TRACKER_HEADER)) {
+                    try {
+                        log.m_tracker = PathTracker.Type.valueOf(line.substring(TRACKER_HEADER.length()).trim());
+                    } catch(IllegalArgumentException e) {
+                        throw new IOException(filepath + ":" + line_number + ": unknown tracker " + line);
+                    }
+                    continue;
+                }
+                if(line.startsWith(POSE_HEADER)) {
+                    String[] values = line.substring(POSE_HEADER.length()).split(",");
+                    if(values.length != PoseEstimator.STATE_SIZE) {
+                        throw new IOException(filepath + ":" + line_number + ": expected " + PoseEstimator.STATE_SIZE
+                            + " pose values, found " + values.length);
+                    }
+                    log.m_pose = new double[values.length];
+                    try {
+                        for(int i = 0; i < values.length; i++) {
+                            log.m_pose[i] = Double.parseDouble(values[i]);
+                        }
+                    } catch(NumberFormatException e) {
+                        throw new IOException(filepath + ":" + line_number + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+                if(line.isEmpty() || line.startsWith("#")) continue;
+                String[] values = line.split(",");
+                // rows from before the quality column ran at FULL, its ordinal is 0
+                if(values.length != WIDTH && values.length != QUALITY) {
+                    throw new IOException(filepath + ":" + line_number + ": expected " + WIDTH + " columns, found " + values.length);
+                }
+                if((count + 1) * WIDTH > rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                }
+                try {
+                    for(int i = 0; i < WIDTH; i++) {
+                        rows[count * WIDTH + i] = i < values.length ? Double.parseDouble(values[i]) : 0;
+                    }
+                } catch(NumberFormatException e) {
+                    throw new IOException(filepath + ":" + line_number + ": " + e.getMessage());
+                }
+                count++;
+            }
+        }
+        log.m_rows = rows;
+        log.m_count = count;
+        return log;
+    }
+
+    /**
+     *
+     * @return path source named in the header, or null if the log has none
+     */
+    public String getPathFile() {
+        return m_path_file;
+    }
+
+    public boolean getBackwards() {
+        return m_backwards;
+    }
+
+    /**
+     *
+     * @return quality a tick ran at, see {@link #QUALITY}
+     */
+    public PathTracker.Quality getQuality(int tick) {
+        return QUALITIES[(int) get(tick, QUALITY)];
+    }
+
+    /**
+     *
+     * @return type of tracker that drove the path
+     */
+    public PathTracker.Type getTracker() {
+        return m_tracker;
+    }
+
+    /**
+     *
+     * @return {@link PoseEstimator#getState} from before the first row, or null in logs
+     *         recorded without it
+     */
+    public double[] getPose() {
+        return m_pose;
+    }
+
+    public int size() {
+        return m_count;
+    }
+
+    /**
+     *
+     * @param tick row index
+     * @param column one of the column constants
+     * @return the recorded value
+     */
+    public double get(int tick, int column) {
+        return m_rows[tick * WIDTH + column];
+    }
+
+}
@@ -0,0 +1,199 @@
+package org.frc2018.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.frc2018.PoseEstimator;
+import org.frc2018.path.PathTracker;
+
+/**
+ * Records {@link TickLog} rows from the robot loop without allocating or touching the disk.
+ *
+ * Rows go into a preallocated ring. A daemon thread wakes every flush period,
+ * copies out whatever has accumulated and appends it to the current log file.
+ * If the writer falls a full ring behind, new rows are dropped and counted.
+ */
+public class TickLogWriter {
+
+    private static final long FLUSH_PERIOD_MS = 100;
+
+    private final String m_directory;
+    private final double[] m_ring;
+    private final int m_capacity;
+
+    private int m_head = 0;
+    private int m_size = 0;
+    private long m_dropped = 0;
+
+    // set by start() and consumed by the flush thread
+    private String m_pending_path_file = null;
+    private boolean m_pending_backwards = false;
+    private PathTracker.Type m_pending_tracker = null;
+    private final double[] m_pending_pose = new double[PoseEstimator.STATE_SIZE];
+    private boolean m_pending_open = false;
+    private int m_pending_split = 0;
+    private boolean m_recording = false;
+
+    private Thread m_thread = null;
+
+    /**
+     *
+     * @param directory directory new log files are created in
+     * @param capacity rows buffered between flushes
+     */
+    public TickLogWriter(String directory, int capacity) {
+        m_directory = directory;
+        m_capacity = capacity;
+        m_ring = new double[capacity * TickLog.WIDTH];
+    }
+
+    /**
+     * Begins a new log file. The file itself is opened on the flush thread.
+     *
+     * @param path_file {@link org.frc2018.path.Path#getSource} of the path the follower is
+     *        driving, written to the header unless it's null
+     * @param backwards whether the path is driven backwards
+     * @param tracker type of tracker driving the path
+     * @param pose {@link PoseEstimator#getState} from before the first row, copied
+     */
+    public synchronized void start(String path_file, boolean backwards, PathTracker.Type tracker, double[] pose) {
+        if(m_thread == null) {
+            m_thread = new Thread(this::run, "tick-log-writer");
+            m_thread.setDaemon(true);
+            m_thread.setPriority(Thread.MIN_PRIORITY);
+            m_thread.start();
+        }
+        m_pending_path_file = path_file;
+        m_pending_backwards = backwards;
+        m_pending_tracker = tracker;
+        System.arraycopy(pose, 0, m_pending_pose, 0, PoseEstimator.STATE_SIZE);
+        m_pending_open = true;
+        // rows already buffered belong to the previous file
+        m_pending_split = m_size;
+        m_recording = true;
+    }
+
+    /**
+     * Stops recording. Rows already buffered are still written.
+     */
+    public synchronized void stop() {
+        m_recording = false;
+    }
+
+    public synchronized void record(double timestamp, double left_distance, double right_distance, double gyro_angle,
+            double x, double y, double left_setpoint, double right_setpoint, boolean done, PathTracker.Quality quality) {
+        if(!m_recording) return;
+        if(m_size == m_capacity) {
+            m_dropped++;
+            return;
+        }
+        int offset = ((m_head + m_size) % m_capacity) * TickLog.WIDTH;
+        m_ring[offset + TickLog.TIMESTAMP] = timestamp;
+        m_ring[offset + TickLog.LEFT_DISTANCE] = left_distance;
+        m_ring[offset + TickLog.RIGHT_DISTANCE] = right_distance;
+        m_ring[offset + TickLog.GYRO_ANGLE] = gyro_angle;
+        m_ring[offset + TickLog.X] = x;
+        m_ring[offset + TickLog.Y] = y;
+        m_ring[offset + TickLog.LEFT_SETPOINT] = left_setpoint;
+        m_ring[offset + TickLog.RIGHT_SETPOINT] = right_setpoint;
+        m_ring[offset + TickLog.DONE] = done ? 1 : 0;
+        m_ring[offset + TickLog.QUALITY] = quality.ordinal();
+        m_size++;
+    }
+
+    public synchronized long getDropped() {
+        return m_dropped;
+    }
+
+    private void run() {
+        BufferedWriter writer = null;
+        double[] rows = new double[m_ring.length];
+        double[] open_pose = new double[PoseEstimator.STATE_SIZE];
+        while(!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(FLUSH_PERIOD_MS);
+            } catch(InterruptedException e) {
+                break;
+            }
+
+            int count;
+            String open_path_file = null;
+            boolean open_backwards = false;
+            PathTracker.Type open_tracker = null;
+            boolean open = false;
+            int split = 0;
+            synchronized(this) {
+                count = m_size;
+                for(int i = 0; i < count; i++) {
+                    System.arraycopy(m_ring, ((m_head + i) % m_capacity) * TickLog.WIDTH, rows, i * TickLog.WIDTH, TickLog.WIDTH);
+                }
+                m_head = 0;
+                m_size = 0;
+                if(m_pending_open) {
+                    open = true;
+                    open_path_file = m_pending_path_file;
+                    open_backwards = m_pending_backwards;
+                    open_tracker = m_pending_tracker;
+                    System.arraycopy(m_pending_pose, 0, open_pose, 0, PoseEstimator.STATE_SIZE);
+                    split = m_pending_split;
+                    m_pending_open = false;
+                }
+            }
+
+            try {
+                if(!open) split = count;
+                if(writer != null) {
+                    writeRows(writer, rows, 0, split);
+                }
+                if(open) {
+                    if(writer != null) writer.close();
+                    writer = openLog(open_path_file, open_backwards, open_tracker, open_pose);
+                    writeRows(writer, rows, split, count);
+                }
+                if(writer != null) writer.flush();
+            } catch(IOException e) {
+                e.printStackTrace();
+                writer = null;
+            }
+        }
+    }
+
+    private BufferedWriter openLog(String path_file, boolean backwards, PathTracker.Type tracker, double[] pose) throws IOException {
+        File directory = new File(m_directory);
+        directory.mkdirs();
+        File file = new File(directory, "ticks_" + System.currentTimeMillis() + ".csv");
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        if(path_file != null) {
+            writer.write(TickLog.PATH_HEADER + path_file);
+            writer.newLine();
+        }
+        writer.write(TickLog.BACKWARDS_HEADER + backwards);
+        writer.newLine();
+        writer.write(TickLog.TRACKER_HEADER + tracker.name());
+        writer.newLine();
+        StringBuilder line = new StringBuilder(TickLog.POSE_HEADER);
+        for(int i = 0; i < pose.length; i++) {
+            if(i > 0) line.append(',');
+            line.append(pose[i]);
+        }
+        writer.write(line.toString());
+        writer.newLine();
+        return writer;
+    }
+
+    private static void writeRows(BufferedWriter writer, double[] rows, int from, int to) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        for(int i = from; i < to; i++) {
+            line.setLength(0);
+            for(int j = 0; j < TickLog.WIDTH; j++) {
+                if(j > 0) line.append(',');
+                line.append(rows[i * TickLog.WIDTH + j]);
+            }
+            writer.write(line.toString());
+            writer.newLine();
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.frc2018.math;
+
+import java.util.Random;
+
+/**
+ * Compares {@link GeometryKernels} against the equivalent point-by-point {@link Vector2} code
+ * on a random walk path and checks that both give the same answers.
+ *
+ * Usage: GeometryBenchmark [points] [queries] [iterations]
+ */
+public class GeometryBenchmark {
+
+    private static volatile double sink;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        Random random = new Random(5499);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        Vector2[] points = new Vector2[n];
+        double heading = 0;
+        for(int i = 0; i < n; i++) {
+            heading += random.nextGaussian() * 0.05;
+            xs[i] = i == 0 ? 0 : xs[i - 1] + 6.0 * Math.cos(heading);
+            ys[i] = i == 0 ? 0 : ys[i - 1] + 6.0 * Math.sin(heading);
+            points[i] = new Vector2(xs[i], ys[i]);
+        }
+        double[] qx = new double[m];
+        double[] qy = new double[m];
+        for(int q = 0; q < m; q++) {
+            int near = random.nextInt(n);
+            qx[q] = xs[near] + random.nextGaussian() * 10;
+            qy[q] = ys[near] + random.nextGaussian() * 10;
+        }
+
+        int[] scalar_index = new int[m];
+        int[] kernel_index = new int[m];
+        double[] scratch = new double[n];
+        double[] scalar_arc = new double[n];
+        double[] kernel_arc = new double[n];
+
+        long scalar_nearest = 0, kernel_nearest = 0, scalar_length = 0, kernel_length = 0;
+        for(int iteration = 0; iteration < iterations; iteration++) {
+            boolean measure = iteration >= iterations / 2;
+
+            long start = System.nanoTime();
+            for(int q = 0; q < m; q++) {
+                Vector2 query = new Vector2(qx[q], qy[q]);
+                int index = 0;
+                double min = Vector2.distanceBetween(query, points[0]);
+                for(int i = 1; i < n; i++) {
+                    double distance = Vector2.distanceBetween(query, points[i]);
+                    if(distance < min) {
+                        min = distance;
+                        index = i;
+                    }
+                }
+                scalar_index[q] = index;
+            }
+            if(measure) scalar_nearest += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            GeometryKernels.nearestPoints(xs, ys, n, qx, qy, m, scratch, kernel_index, null);
+            if(measure) kernel_nearest += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            scalar_arc[0] = 0;
+            for(int i = 1; i < n; i++) {
+                scalar_arc[i] = scalar_arc[i - 1] + Vector2.distanceBetween(points[i - 1], points[i]);
+            }
+            if(measure) scalar_length += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            GeometryKernels.cumulativeArcLength(xs, ys, n, kernel_arc);
+            if(measure) kernel_length += System.nanoTime() - start;
+
+            sink += scalar_arc[n - 1] + kernel_arc[n - 1] + scalar_index[0] + kernel_index[0];
+        }
+
+        int mismatches = 0;
+        for(int q = 0; q < m; q++) {
+            if(scalar_index[q] != kernel_index[q]) mismatches++;
+        }
+        double max_arc_error = 0;
+        for(int i = 0; i < n; i++) {
+            max_arc_error = Math.max(max_arc_error, Math.abs(scalar_arc[i] - kernel_arc[i]));
+        }
+
+        int measured = iterations - iterations / 2;
+        System.out.printf("%d points, %d queries, %d measured iterations%n", n, m, measured);
+        System.out.printf("nearest point: Vector2 %.3f ms, kernel %.3f ms (%.1fx), %d mismatches%n",
+            scalar_nearest / 1e6 / measured, kernel_nearest / 1e6 / measured,
+            (double) scalar_nearest / kernel_nearest, mismatches);
+        System.out.printf("arc length:    Vector2 %.3f us, kernel %.3f us (%.1fx), max difference %.2e%n",
+            scalar_length / 1e3 / measured, kernel_length / 1e3 / measured,
+            (double) scalar_length / kernel_length, max_arc_error);
+    }
+
+}
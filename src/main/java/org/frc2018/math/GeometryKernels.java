@@ -0,0 +1,139 @@
+package org.frc2018.math;
+
+/**
+ * Batch geometry over primitive coordinate arrays for offline path tooling.
+ *
+ * Points are passed as parallel x and y arrays. Every method allocates nothing
+ * and keeps its inner loop free of calls and branches where it can, so HotSpot's
+ * superword pass can vectorize it. The argmin passes are kept separate from the
+ * distance passes for the same reason.
+ */
+public class GeometryKernels {
+
+    private GeometryKernels() {}
+
+    /**
+     * Squared distance from one query point to each of the first n points.
+     *
+     * @param xs point x coordinates
+     * @param ys point y coordinates
+     * @param n number of points
+     * @param px query x
+     * @param py query y
+     * @param out receives n squared distances
+     */
+    public static void squaredDistances(double[] xs, double[] ys, int n, double px, double py, double[] out) {
+        for(int i = 0; i < n; i++) {
+            double dx = xs[i] - px;
+            double dy = ys[i] - py;
+            out[i] = dx * dx + dy * dy;
+        }
+    }
+
+    /**
+     *
+     * @param values values to search
+     * @param n number of values
+     * @return index of the smallest of the first n values, the first one on ties
+     */
+    public static int argMin(double[] values, int n) {
+        int index = 0;
+        double min = values[0];
+        for(int i = 1; i < n; i++) {
+            if(values[i] < min) {
+                min = values[i];
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds the closest path point for each of many query points.
+     *
+     * @param xs path point x coordinates
+     * @param ys path point y coordinates
+     * @param n number of path points
+     * @param qx query x coordinates
+     * @param qy query y coordinates
+     * @param m number of queries
+     * @param scratch working space of at least n doubles
+     * @param out_index receives the closest point index for each query
+     * @param out_distance receives the distance to that point for each query, may be null
+     */
+    public static void nearestPoints(double[] xs, double[] ys, int n, double[] qx, double[] qy, int m,
+            double[] scratch, int[] out_index, double[] out_distance) {
+        for(int q = 0; q < m; q++) {
+            squaredDistances(xs, ys, n, qx[q], qy[q], scratch);
+            int index = argMin(scratch, n);
+            out_index[q] = index;
+            if(out_distance != null) out_distance[q] = Math.sqrt(scratch[index]);
+        }
+    }
+
+    /**
+     * Distance from one query point to each segment between consecutive points.
+     *
+     * @param xs point x coordinates
+     * @param ys point y coordinates
+     * @param n number of points, giving n - 1 segments
+     * @param px query x
+     * @param py query y
+     * @param out receives n - 1 distances, segment i runs from point i to point i + 1
+     */
+    public static void pointToSegmentDistances(double[] xs, double[] ys, int n, double px, double py, double[] out) {
+        for(int i = 0; i < n - 1; i++) {
+            double ax = xs[i];
+            double ay = ys[i];
+            double dx = xs[i + 1] - ax;
+            double dy = ys[i + 1] - ay;
+            double fx = px - ax;
+            double fy = py - ay;
+            double length_squared = dx * dx + dy * dy;
+            // degenerate segments project to their start point
+            double t = (fx * dx + fy * dy) / Math.max(length_squared, 1e-12);
+            t = Math.min(1.0, Math.max(0.0, t));
+            double ex = fx - t * dx;
+            double ey = fy - t * dy;
+            out[i] = Math.sqrt(ex * ex + ey * ey);
+        }
+    }
+
+    /**
+     * Lengths of the segments between consecutive points.
+     *
+     * @param xs point x coordinates
+     * @param ys point y coordinates
+     * @param n number of points
+     * @param out receives n - 1 segment lengths
+     */
+    public static void segmentLengths(double[] xs, double[] ys, int n, double[] out) {
+        for(int i = 0; i < n - 1; i++) {
+            double dx = xs[i + 1] - xs[i];
+            double dy = ys[i + 1] - ys[i];
+            out[i] = Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    /**
+     * Distance along the path from the first point to every point.
+     *
+     * @param xs point x coordinates
+     * @param ys point y coordinates
+     * @param n number of points
+     * @param out receives n distances, out[0] is 0
+     */
+    public static void cumulativeArcLength(double[] xs, double[] ys, int n, double[] out) {
+        if(n == 0) return;
+        // lengths first so the sqrt loop vectorizes, then the serial prefix sum in place
+        segmentLengths(xs, ys, n, out);
+        double total = 0;
+        for(int i = 0; i < n - 1; i++) {
+            double length = out[i];
+            out[i] = total;
+            total += length;
+        }
+        out[n - 1] = total;
+    }
+
+}
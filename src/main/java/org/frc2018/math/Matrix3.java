@@ -0,0 +1,77 @@
+package org.frc2018.math;
+
+/**
+ * 3x3 matrix kernels on row major double[9] arrays for code that runs every tick.
+ *
+ * Every method is unrolled and allocates nothing. The output may not be the same array
+ * as an input.
+ */
+public class Matrix3 {
+
+    private Matrix3() {}
+
+    /**
+     *
+     * @param m receives the identity
+     */
+    public static void identity(double[] m) {
+        m[0] = 1; m[1] = 0; m[2] = 0;
+        m[3] = 0; m[4] = 1; m[5] = 0;
+        m[6] = 0; m[7] = 0; m[8] = 1;
+    }
+
+    /**
+     *
+     * @param m receives all zeros
+     */
+    public static void zero(double[] m) {
+        m[0] = 0; m[1] = 0; m[2] = 0;
+        m[3] = 0; m[4] = 0; m[5] = 0;
+        m[6] = 0; m[7] = 0; m[8] = 0;
+    }
+
+    /**
+     *
+     * @param out receives a b
+     */
+    public static void multiply(double[] a, double[] b, double[] out) {
+        out[0] = a[0] * b[0] + a[1] * b[3] + a[2] * b[6];
+        out[1] = a[0] * b[1] + a[1] * b[4] + a[2] * b[7];
+        out[2] = a[0] * b[2] + a[1] * b[5] + a[2] * b[8];
+        out[3] = a[3] * b[0] + a[4] * b[3] + a[5] * b[6];
+        out[4] = a[3] * b[1] + a[4] * b[4] + a[5] * b[7];
+        out[5] = a[3] * b[2] + a[4] * b[5] + a[5] * b[8];
+        out[6] = a[6] * b[0] + a[7] * b[3] + a[8] * b[6];
+        out[7] = a[6] * b[1] + a[7] * b[4] + a[8] * b[7];
+        out[8] = a[6] * b[2] + a[7] * b[5] + a[8] * b[8];
+    }
+
+    /**
+     *
+     * @param out receives a b^T
+     */
+    public static void multiplyTransposed(double[] a, double[] b, double[] out) {
+        out[0] = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+        out[1] = a[0] * b[3] + a[1] * b[4] + a[2] * b[5];
+        out[2] = a[0] * b[6] + a[1] * b[7] + a[2] * b[8];
+        out[3] = a[3] * b[0] + a[4] * b[1] + a[5] * b[2];
+        out[4] = a[3] * b[3] + a[4] * b[4] + a[5] * b[5];
+        out[5] = a[3] * b[6] + a[4] * b[7] + a[5] * b[8];
+        out[6] = a[6] * b[0] + a[7] * b[1] + a[8] * b[2];
+        out[7] = a[6] * b[3] + a[7] * b[4] + a[8] * b[5];
+        out[8] = a[6] * b[6] + a[7] * b[7] + a[8] * b[8];
+    }
+
+    /**
+     * Averages m with its transpose, keeping a covariance symmetric against rounding.
+     */
+    public static void symmetrize(double[] m) {
+        double m01 = (m[1] + m[3]) * 0.5;
+        double m02 = (m[2] + m[6]) * 0.5;
+        double m12 = (m[5] + m[7]) * 0.5;
+        m[1] = m01; m[3] = m01;
+        m[2] = m02; m[6] = m02;
+        m[5] = m12; m[7] = m12;
+    }
+
+}
@@ -149,7 +149,9 @@ public class Vector2 {
 	 * @return The distance between the two vectors
 	 */
 	public static double distanceBetween(Vector2 from, Vector2 to) {
-		return new Vector2(from.y-to.y, from.x-to.x).getMagnitude();
+		double dx = from.x - to.x;
+		double dy = from.y - to.y;
+		return Math.sqrt(dx*dx + dy*dy);
 	}
 	
 	/**
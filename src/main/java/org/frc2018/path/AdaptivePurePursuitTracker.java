@@ -0,0 +1,22 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+
+/**
+ * Pure pursuit with a lookahead that grows with the path velocity. Looking further ahead
+ * at speed keeps fast straights from weaving, while the short lookahead in slow sections,
+ * which are usually the tight turns, keeps the robot from cutting corners.
+ */
+public class AdaptivePurePursuitTracker extends PathFollower {
+
+    public AdaptivePurePursuitTracker(Path path) {
+        super(path);
+    }
+
+    @Override
+    protected double getLookaheadDistance(double velocity) {
+        double distance = Math.abs(velocity) * Constants.ADAPTIVE_LOOK_AHEAD_TIME;
+        return Math.max(Constants.ADAPTIVE_LOOK_AHEAD_MIN, Math.min(Constants.ADAPTIVE_LOOK_AHEAD_MAX, distance));
+    }
+
+}
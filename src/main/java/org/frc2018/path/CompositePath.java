@@ -0,0 +1,299 @@
+package org.frc2018.path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.frc2018.Constants;
+import org.frc2018.math.Vector2;
+
+/**
+ * Several paths driven one after another as a single path, so one {@link PathFollower}
+ * drives all of them without stopping between segments.
+ *
+ * The points of the segments are numbered continuously, segment after segment, and
+ * {@link #getArcLength(int)} gives the distance along the whole path to any of them. Each
+ * segment keeps its own direction, so a path can drive forwards into a spot and back out.
+ *
+ * Where two segments in the same direction meet, the first segment's slow down to its end
+ * is cut off at the starting velocity of the second within {@link Constants#PATH_JOIN_BLEND_DISTANCE}
+ * of the join, so the robot carries its speed through. At a change of direction the robot
+ * has to stop, so those joins keep the original velocities.
+ *
+ * Trackers look ahead across joins in the same direction but not past a change of
+ * direction, see {@link #getDirectionEnd()}.
+ *
+ * The closest point search stays within the current segment, so a segment that doubles
+ * back over an earlier one can't pull the robot ahead, and only looks
+ * {@link Constants#PATH_SEARCH_WINDOW} points past the last closest point, so a query costs
+ * the same wherever the robot is on the path. The robot moves on to the next segment when
+ * the last point of the current one is the closest.
+ */
+public class CompositePath extends Path {
+
+    private static final String FORWARD = "forward:";
+    private static final String BACKWARD = "backward:";
+
+    private final JoinedStorage m_joined;
+    private final String[] m_sources;
+    private int m_segment = 0;
+
+    /**
+     *
+     * @param segments paths to drive in order, each in its own direction
+     */
+    public CompositePath(Path... segments) {
+        this(new JoinedStorage(segments), sourcesOf(segments));
+    }
+
+    private CompositePath(JoinedStorage joined, String[] sources) {
+        super(joined, joined.m_backwards[0]);
+        m_joined = joined;
+        m_sources = sources;
+    }
+
+    private static String[] sourcesOf(Path[] segments) {
+        String[] sources = new String[segments.length];
+        for(int s = 0; s < segments.length; s++) {
+            sources[s] = segments[s].getSource();
+            if(sources[s] == null) return null;
+        }
+        return sources;
+    }
+
+    /**
+     * Rebuilds a composite from the inside of its {@link #getSource()}.
+     */
+    static CompositePath fromSource(String segments) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for(int i = 0; i <= segments.length(); i++) {
+            char c = i < segments.length() ? segments.charAt(i) : ',';
+            if(c == '(') depth++;
+            if(c == ')') depth--;
+            if(c != ',' || depth != 0) continue;
+            String segment = segments.substring(start, i);
+            if(segment.startsWith(FORWARD)) {
+                paths.add(Path.fromSource(segment.substring(FORWARD.length()), false));
+            } else if(segment.startsWith(BACKWARD)) {
+                paths.add(Path.fromSource(segment.substring(BACKWARD.length()), true));
+            } else {
+                throw new IllegalArgumentException("composite segment without a direction: " + segment);
+            }
+            start = i + 1;
+        }
+        return new CompositePath(paths.toArray(new Path[paths.size()]));
+    }
+
+    @Override
+    protected int findClosestPointIndex(Vector2 robot_pos) {
+        return findClosestPointIndex(robot_pos, Constants.PATH_SEARCH_WINDOW);
+    }
+
+    @Override
+    protected int findClosestPointIndex(Vector2 robot_pos, int window) {
+        window = Math.min(window, Constants.PATH_SEARCH_WINDOW);
+        int last = m_joined.m_last[m_segment];
+        int index = searchClosest(robot_pos, Math.min(last, getSearchStart() + window));
+        while(index == last && m_segment < m_joined.m_last.length - 1) {
+            m_segment++;
+            last = m_joined.m_last[m_segment];
+            restartSearchAt(m_joined.m_first[m_segment]);
+            index = searchClosest(robot_pos, Math.min(last, getSearchStart() + window));
+        }
+        return index;
+    }
+
+    /**
+     *
+     * @return direction of the segment the robot is on
+     */
+    @Override
+    public boolean getBackwards() {
+        return m_joined.m_backwards[m_segment];
+    }
+
+    /**
+     * Sets the direction of the first segment and flips the others with it, so every later
+     * segment keeps its direction relative to the one before and the joins stay as they were.
+     */
+    @Override
+    public void setBackwards(boolean backwards) {
+        super.setBackwards(backwards);
+        if(m_joined.m_backwards[0] == backwards) return;
+        for(int s = 0; s < m_joined.m_backwards.length; s++) {
+            m_joined.m_backwards[s] = !m_joined.m_backwards[s];
+        }
+    }
+
+    /**
+     *
+     * @return last point of the segments in the current segment's direction that follow on from it
+     */
+    @Override
+    public int getDirectionEnd() {
+        return m_joined.m_direction_end[m_segment];
+    }
+
+    /**
+     *
+     * @return "composite(forward:a.csv,backward:b.csv)" with each segment's source and current
+     *         direction, or null if a segment has no source
+     */
+    @Override
+    public String getSource() {
+        if(m_sources == null) return null;
+        StringBuilder source = new StringBuilder("composite(");
+        for(int s = 0; s < m_sources.length; s++) {
+            if(s > 0) source.append(',');
+            source.append(m_joined.m_backwards[s] ? BACKWARD : FORWARD).append(m_sources[s]);
+        }
+        return source.append(')').toString();
+    }
+
+    /**
+     *
+     * @return index of the segment the robot is on
+     */
+    public int getSegment() {
+        return m_segment;
+    }
+
+    public int getNumSegments() {
+        return m_joined.m_first.length;
+    }
+
+    /**
+     *
+     * @return index of the first point of a segment in the whole path
+     */
+    public int getSegmentStart(int segment) {
+        return m_joined.m_first[segment];
+    }
+
+    /**
+     *
+     * @return inches along the whole path from its first point to a point
+     */
+    public double getArcLength(int index) {
+        return m_joined.m_arc[index];
+    }
+
+    public double getLength() {
+        return m_joined.m_arc[m_joined.m_arc.length - 1];
+    }
+
+    /**
+     * The segments' stores laid end to end, with the blended velocities near joins.
+     */
+    private static class JoinedStorage implements PathStorage {
+        private final PathStorage[] m_parts;
+        private final boolean[] m_backwards;
+        private final int[] m_first;
+        private final int[] m_last;
+        private final double[] m_join_velocity;
+        private final int[] m_direction_end;
+        private final double[] m_arc;
+
+        JoinedStorage(Path[] segments) {
+            if(segments.length == 0) {
+                throw new IllegalArgumentException("a composite path needs at least one segment");
+            }
+            int k = segments.length;
+            m_parts = new PathStorage[k];
+            m_backwards = new boolean[k];
+            m_first = new int[k];
+            m_last = new int[k];
+            m_join_velocity = new double[k];
+            int size = 0;
+            for(int s = 0; s < k; s++) {
+                m_parts[s] = segments[s].getStorage();
+                m_backwards[s] = segments[s].getBackwards();
+                if(m_parts[s].size() == 0) {
+                    throw new IllegalArgumentException("segment " + s + " has no points");
+                }
+                m_first[s] = size;
+                size += m_parts[s].size();
+                m_last[s] = size - 1;
+            }
+            for(int s = 0; s < k - 1; s++) {
+                m_join_velocity[s] = m_backwards[s] == m_backwards[s + 1] ? m_parts[s + 1].getVelocity(0) : 0.0;
+            }
+            // flipping every segment keeps these, only where the direction changes matters
+            m_direction_end = new int[k];
+            m_direction_end[k - 1] = m_last[k - 1];
+            for(int s = k - 2; s >= 0; s--) {
+                m_direction_end[s] = m_backwards[s] == m_backwards[s + 1] ? m_direction_end[s + 1] : m_last[s];
+            }
+
+            // the step from a segment's last point to the next one's first is counted, it is
+            // zero when the segments actually meet
+            m_arc = new double[size];
+            for(int i = 1; i < size; i++) {
+                m_arc[i] = m_arc[i - 1] + Math.hypot(getX(i) - getX(i - 1), getY(i) - getY(i - 1));
+            }
+        }
+
+        private int segmentOf(int index) {
+            int low = 0;
+            int high = m_first.length - 1;
+            while(low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if(m_first[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        @Override
+        public int size() {
+            return m_last[m_last.length - 1] + 1;
+        }
+
+        @Override
+        public double getX(int index) {
+            int s = segmentOf(index);
+            return m_parts[s].getX(index - m_first[s]);
+        }
+
+        @Override
+        public double getY(int index) {
+            int s = segmentOf(index);
+            return m_parts[s].getY(index - m_first[s]);
+        }
+
+        @Override
+        public double getVelocity(int index) {
+            int s = segmentOf(index);
+            double velocity = m_parts[s].getVelocity(index - m_first[s]);
+            if(m_join_velocity[s] > velocity && m_arc[m_last[s]] - m_arc[index] <= Constants.PATH_JOIN_BLEND_DISTANCE) {
+                return m_join_velocity[s];
+            }
+            return velocity;
+        }
+
+        @Override
+        public int closestIndex(double x, double y, int from, int to) {
+            // a range within one segment can use that segment's search
+            int s = segmentOf(from);
+            if(to <= m_last[s]) {
+                return m_parts[s].closestIndex(x, y, from - m_first[s], to - m_first[s]) + m_first[s];
+            }
+            return PathStorage.super.closestIndex(x, y, from, to);
+        }
+
+        @Override
+        public long getResidentBytes() {
+            long bytes = 32 + m_parts.length * (8 + 1 + 4 + 4 + 8 + 4) + m_arc.length * 8L;
+            for(PathStorage part : m_parts) {
+                bytes += part.getResidentBytes();
+            }
+            return bytes;
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.frc2018.path;
+
+/**
+ * Stores path points in double precision parallel arrays, 24 bytes per point.
+ */
+public class DoublePathStorage implements PathStorage {
+
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_velocity;
+
+    /**
+     * Takes ownership of the arrays, they must not be modified afterwards.
+     * 
+     * @param x x positions
+     * @param y y positions
+     * @param velocity target velocities
+     */
+    public DoublePathStorage(double[] x, double[] y, double[] velocity) {
+        m_x = x;
+        m_y = y;
+        m_velocity = velocity;
+    }
+
+    @Override
+    public int size() {
+        return m_x.length;
+    }
+
+    @Override
+    public double getX(int index) {
+        return m_x[index];
+    }
+
+    @Override
+    public double getY(int index) {
+        return m_y[index];
+    }
+
+    @Override
+    public double getVelocity(int index) {
+        return m_velocity[index];
+    }
+
+    @Override
+    public long getResidentBytes() {
+        return 3L * 8 * m_x.length;
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.frc2018.path;
+
+/**
+ * Stores path points in single precision parallel arrays, 12 bytes per point,
+ * half of {@link DoublePathStorage}.
+ *
+ * A float keeps 24 significant bits, so rounding a value v moves it by at most
+ * |v| * 2^-24. For anything on the field (|x|, |y| under 1024 inches) that is
+ * under 6.2e-5 inches, and for velocities under 512 in/s it is under 3.1e-5 in/s,
+ * far below what the encoders or the talon velocity loop can resolve. Values
+ * are widened back to double on read, so all follower math stays in double.
+ */
+public class FloatPathStorage implements PathStorage {
+
+    private final float[] m_x;
+    private final float[] m_y;
+    private final float[] m_velocity;
+
+    /**
+     * 
+     * @param x x positions, rounded to float
+     * @param y y positions, rounded to float
+     * @param velocity target velocities, rounded to float
+     */
+    public FloatPathStorage(double[] x, double[] y, double[] velocity) {
+        m_x = new float[x.length];
+        m_y = new float[y.length];
+        m_velocity = new float[velocity.length];
+        for(int i = 0; i < x.length; i++) {
+            m_x[i] = (float) x[i];
+            m_y[i] = (float) y[i];
+            m_velocity[i] = (float) velocity[i];
+        }
+    }
+
+    @Override
+    public int size() {
+        return m_x.length;
+    }
+
+    @Override
+    public double getX(int index) {
+        return m_x[index];
+    }
+
+    @Override
+    public double getY(int index) {
+        return m_y[index];
+    }
+
+    @Override
+    public double getVelocity(int index) {
+        return m_velocity[index];
+    }
+
+    @Override
+    public long getResidentBytes() {
+        return 3L * 4 * m_x.length;
+    }
+
+}
@@ -0,0 +1,348 @@
+package org.frc2018.path;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.frc2018.Constants;
+import org.frc2018.Position;
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Drives every path in a corpus through the {@link PathTracker} Drive uses and the real
+ * {@link Position} code on a kinematic robot, from a set of perturbed starting poses and in both directions,
+ * and compares the results against a stored baseline.
+ *
+ * The robot model lags each wheel behind its setpoint with a first order time constant,
+ * applies the same setpoint scaling as Drive, and integrates the true pose separately from
+ * the odometry. Tracking error is the distance from the true pose to the path polyline.
+ * Cases run in parallel, each with its own Path, follower and Position.
+ *
+ * Usage: FollowerRegression &lt;corpus directory&gt; &lt;baseline.csv&gt; [--update]
+ *
+ * Without a baseline, or with --update, the results are written as the new baseline.
+ * Otherwise exits with 1 if any case finishes worse than the baseline by more than
+ * {@link #ERROR_SLACK} inches plus {@link #ERROR_RATIO}, stops finishing, or if the mean
+ * follower time per tick over the corpus grows by more than {@link #CPU_RATIO}.
+ */
+public class FollowerRegression {
+
+    public static final double ERROR_SLACK = 0.5; // inches
+    public static final double ERROR_RATIO = 0.1; // fraction of the baseline error
+    public static final double CPU_RATIO = 1.5;
+
+    private static final double DT = Constants.LOOP_PERIOD;
+    private static final double WHEEL_TIME_CONSTANT = 0.05; // seconds
+    private static final double MAX_TIME = 30.0; // seconds
+
+    /**
+     * Starting pose offsets from the first point: lateral inches, heading degrees.
+     */
+    private static final double[][] PERTURBATIONS = {
+        {0, 0},
+        {3, 0},
+        {-3, 0},
+        {0, 8},
+        {0, -8},
+        {2, -5},
+    };
+
+    public static class Result {
+        public final String name;
+        public double mean_error;
+        public double max_error;
+        public double final_error;
+        public boolean finished;
+        public int ticks;
+        public double ns_per_tick;
+
+        Result(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Runs one case.
+     *
+     * @param name case name for the report
+     * @param storage path points, shared between cases
+     * @param backwards drive the path backwards
+     * @param lateral start this many inches left of the first point
+     * @param heading_offset start with this many degrees of heading error
+     */
+    public static Result run(String name, PathStorage storage, boolean backwards, double lateral, double heading_offset) {
+        return run(name, storage, backwards, lateral, heading_offset, Constants.PATH_TRACKER);
+    }
+
+    /**
+     * Runs one case with a given tracker.
+     */
+    public static Result run(String name, PathStorage storage, boolean backwards, double lateral, double heading_offset,
+            PathTracker.Type tracker) {
+        Result result = new Result(name);
+        Path path = new Path(storage, backwards);
+        PathTracker follower = tracker.create(path);
+        Position position = new Position();
+
+        // heading 0 is along +y, counter clockwise positive, same as the gyro
+        double path_heading = Math.atan2(-(storage.getX(1) - storage.getX(0)), storage.getY(1) - storage.getY(0));
+        double heading = path_heading + Math.toRadians(heading_offset) + (backwards ? Math.PI : 0);
+        double x = storage.getX(0) - lateral * Math.cos(path_heading);
+        double y = storage.getY(0) - lateral * Math.sin(path_heading);
+        position.setPosition(new Vector2(x, y));
+
+        double left_distance = 0, right_distance = 0;
+        double left_velocity = 0, right_velocity = 0;
+        double left_setpoint = 0, right_setpoint = 0;
+        double error_sum = 0;
+        int segment = 0;
+        long cpu_ns = 0;
+        int max_ticks = (int) (MAX_TIME / DT);
+        int tick = 0;
+        for(; tick < max_ticks; tick++) {
+            // plant, the wheels chase the last setpoint
+            double lag = DT / WHEEL_TIME_CONSTANT;
+            left_velocity += (left_setpoint - left_velocity) * lag;
+            right_velocity += (right_setpoint - right_velocity) * lag;
+            double left_delta = left_velocity * DT;
+            double right_delta = right_velocity * DT;
+            double turn = (right_delta - left_delta) / Constants.TRACK_WIDTH;
+            double distance = (left_delta + right_delta) / 2.0;
+            double mid_heading = heading + turn / 2.0;
+            x -= distance * Math.sin(mid_heading);
+            y += distance * Math.cos(mid_heading);
+            heading += turn;
+            left_distance += left_delta;
+            right_distance += right_delta;
+
+            segment = nearestSegment(storage, x, y, segment);
+            double error = distanceToSegment(storage, segment, x, y);
+            error_sum += error;
+            result.max_error = Math.max(result.max_error, error);
+
+            // the code under test, timed like a robot loop tick
+            long start = System.nanoTime();
+            position.update(left_distance, right_distance, gyroDegrees(heading));
+            Vector2 robot_pos = position.getPosition();
+            boolean done = follower.doneWithPath(robot_pos);
+            VelocitySetpoint setpoints = done ? null : follower.update(robot_pos, Math.toRadians(gyroDegrees(heading)));
+            cpu_ns += System.nanoTime() - start;
+            if(done) {
+                result.finished = true;
+                break;
+            }
+
+            // Drive.updateVelocitySetpoint scaling
+            double max_desired = Math.max(Math.abs(setpoints.left_velocity), Math.abs(setpoints.right_velocity));
+            double scale = max_desired > Constants.MAX_SETPOINT ? Constants.MAX_SETPOINT / max_desired : 1.0;
+            left_setpoint = scale * setpoints.left_velocity;
+            right_setpoint = scale * setpoints.right_velocity;
+        }
+        int last = storage.size() - 1;
+        result.ticks = tick + 1;
+        result.mean_error = error_sum / result.ticks;
+        result.final_error = Math.hypot(storage.getX(last) - x, storage.getY(last) - y);
+        result.ns_per_tick = (double) cpu_ns / result.ticks;
+        return result;
+    }
+
+    private static double gyroDegrees(double heading) {
+        double angle = Math.toDegrees(heading) % 360.0;
+        return angle < 0 ? angle + 360.0 : angle;
+    }
+
+    /**
+     * Searches a window of segments around the last one, the robot never jumps far along the path.
+     */
+    private static int nearestSegment(PathStorage storage, double x, double y, int last) {
+        int best = last;
+        double best_distance = Double.POSITIVE_INFINITY;
+        int end = Math.min(storage.size() - 2, last + 50);
+        for(int i = Math.max(0, last - 5); i <= end; i++) {
+            double distance = distanceToSegment(storage, i, x, y);
+            if(distance < best_distance) {
+                best_distance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double distanceToSegment(PathStorage storage, int segment, double x, double y) {
+        double ax = storage.getX(segment), ay = storage.getY(segment);
+        double dx = storage.getX(segment + 1) - ax, dy = storage.getY(segment + 1) - ay;
+        double length_squared = dx * dx + dy * dy;
+        double t = length_squared > 0 ? ((x - ax) * dx + (y - ay) * dy) / length_squared : 0;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(ax + t * dx - x, ay + t * dy - y);
+    }
+
+    static List<Future<Result>> submitAll(ExecutorService pool, List<String> files) {
+        return submitAll(pool, files, Constants.PATH_TRACKER);
+    }
+
+    /**
+     * Queues every case of every file in the corpus for one tracker.
+     */
+    static List<Future<Result>> submitAll(ExecutorService pool, List<String> files, PathTracker.Type tracker) {
+        List<Future<Result>> futures = new ArrayList<>();
+        for(String file : files) {
+            PathStorage storage;
+            try {
+                storage = Path.loadStorage(file, Path.Precision.DOUBLE);
+            } catch(IOException e) {
+                // PathValidator reports these
+                System.out.println("SKIP " + e.getMessage());
+                continue;
+            }
+            if(storage.size() < 2) continue;
+            String base = Paths.get(file).getFileName().toString();
+            for(boolean backwards : new boolean[] {false, true}) {
+                for(double[] perturbation : PERTURBATIONS) {
+                    String name = String.format("%s%s/%+.0fin/%+.0fdeg", base, backwards ? "/back" : "",
+                        perturbation[0], perturbation[1]);
+                    futures.add(pool.submit(() -> run(name, storage, backwards, perturbation[0], perturbation[1], tracker)));
+                }
+            }
+        }
+        return futures;
+    }
+
+    private static Map<String, Result> readBaseline(String file) throws IOException {
+        Map<String, Result> baseline = new LinkedHashMap<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.startsWith("#") || line.isEmpty()) continue;
+                String[] fields = line.split(",");
+                Result result = new Result(fields[0]);
+                result.mean_error = Double.parseDouble(fields[1]);
+                result.max_error = Double.parseDouble(fields[2]);
+                result.final_error = Double.parseDouble(fields[3]);
+                result.finished = Boolean.parseBoolean(fields[4]);
+                result.ticks = Integer.parseInt(fields[5]);
+                result.ns_per_tick = Double.parseDouble(fields[6]);
+                baseline.put(result.name, result);
+            }
+        }
+        return baseline;
+    }
+
+    private static void writeBaseline(String file, List<Result> results) throws IOException {
+        try(PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("# case,mean error,max error,final error,finished,ticks,ns per tick");
+            for(Result result : results) {
+                writer.printf("%s,%.4f,%.4f,%.4f,%b,%d,%.1f%n", result.name, result.mean_error, result.max_error,
+                    result.final_error, result.finished, result.ticks, result.ns_per_tick);
+            }
+        }
+    }
+
+    private static boolean worse(double current, double baseline) {
+        return current > baseline * (1.0 + ERROR_RATIO) + ERROR_SLACK;
+    }
+
+    /**
+     *
+     * @return every csv path under a directory, sorted
+     */
+    static List<String> listCorpus(String directory) throws IOException {
+        try(Stream<java.nio.file.Path> walk = Files.walk(Paths.get(directory))) {
+            return walk.filter(file -> file.toString().endsWith(".csv"))
+                .map(java.nio.file.Path::toString)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2) {
+            System.err.println("usage: FollowerRegression <corpus directory> <baseline.csv> [--update]");
+            System.exit(2);
+        }
+        boolean update = args.length > 2 && args[2].equals("--update");
+
+        List<String> files = listCorpus(args[0]);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Result> results = new ArrayList<>();
+        for(Future<Result> future : submitAll(pool, files)) {
+            try {
+                results.add(future.get());
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        pool.shutdown();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        double total_ns = 0;
+        long total_ticks = 0;
+        for(Result result : results) {
+            total_ns += result.ns_per_tick * result.ticks;
+            total_ticks += result.ticks;
+        }
+        double ns_per_tick = total_ticks > 0 ? total_ns / total_ticks : 0;
+        System.out.printf("%d cases from %d paths in %.2f s, %d ticks, %.0f ns per tick%n",
+            results.size(), files.size(), elapsed, total_ticks, ns_per_tick);
+
+        if(update || !Files.exists(Paths.get(args[1]))) {
+            writeBaseline(args[1], results);
+            System.out.println("wrote baseline " + args[1]);
+            System.exit(0);
+        }
+
+        Map<String, Result> baseline = readBaseline(args[1]);
+        int regressions = 0;
+        double baseline_ns = 0;
+        long baseline_ticks = 0;
+        for(Result result : results) {
+            Result expected = baseline.get(result.name);
+            if(expected == null) {
+                System.out.println("NEW  " + result.name);
+                continue;
+            }
+            baseline_ns += expected.ns_per_tick * expected.ticks;
+            baseline_ticks += expected.ticks;
+            List<String> problems = new ArrayList<>();
+            if(expected.finished && !result.finished) problems.add("no longer finishes");
+            if(worse(result.mean_error, expected.mean_error)) {
+                problems.add(String.format("mean error %.2f -> %.2f in", expected.mean_error, result.mean_error));
+            }
+            if(worse(result.max_error, expected.max_error)) {
+                problems.add(String.format("max error %.2f -> %.2f in", expected.max_error, result.max_error));
+            }
+            if(worse(result.final_error, expected.final_error)) {
+                problems.add(String.format("final error %.2f -> %.2f in", expected.final_error, result.final_error));
+            }
+            if(!problems.isEmpty()) {
+                System.out.println("FAIL " + result.name + ": " + String.join(", ", problems));
+                regressions++;
+            }
+        }
+        double expected_ns_per_tick = baseline_ticks > 0 ? baseline_ns / baseline_ticks : 0;
+        if(expected_ns_per_tick > 0 && ns_per_tick > expected_ns_per_tick * CPU_RATIO) {
+            System.out.printf("FAIL cpu: %.0f -> %.0f ns per tick%n", expected_ns_per_tick, ns_per_tick);
+            regressions++;
+        }
+        System.out.printf("%d regression(s) against %s%n", regressions, args[1]);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+}
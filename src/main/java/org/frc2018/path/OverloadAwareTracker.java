@@ -0,0 +1,143 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Wraps a {@link PathTracker} and lowers its {@link PathTracker.Quality} while a tick of it
+ * costs more than a budget, so a loop that is already overrunning isn't made worse by the
+ * follower's own work.
+ *
+ * The cost is the wall time of doneWithPath and update in a tick, so it also grows when
+ * the loop thread is preempted or paused. A tick over budget drops one level, at most once
+ * every {@link Constants#TRACKER_SETTLE_TICKS} ticks so the cheaper mode gets to show its
+ * cost. {@link Constants#TRACKER_RECOVER_TICKS} ticks in a row under
+ * {@link Constants#TRACKER_RECOVER_RATIO} of the budget climb back up one level.
+ *
+ * At {@link PathTracker.Quality#HOLD} the last setpoint is returned without calling the
+ * tracker, but never more than {@link Constants#TRACKER_MAX_HELD_TICKS} ticks in a row,
+ * the tick after that runs at REUSE_SEGMENT. doneWithPath always reaches the tracker, at
+ * the current quality, so the end of the path is never missed.
+ */
+public class OverloadAwareTracker implements PathTracker {
+
+    private static final Quality[] QUALITIES = Quality.values();
+
+    private final PathTracker m_tracker;
+    private final long m_budget_ns;
+    private final VelocitySetpoint m_setpoint = new VelocitySetpoint();
+    private boolean m_have_setpoint = false;
+
+    private Quality m_quality = Quality.FULL;
+    private Quality m_last_quality = Quality.FULL;
+    private long m_done_ns = 0;
+    private int m_ticks_since_drop = Integer.MAX_VALUE;
+    private int m_calm_ticks = 0;
+    private int m_held_ticks = 0;
+
+    private final long[] m_ticks = new long[QUALITIES.length];
+    private long m_over_budget = 0;
+
+    public OverloadAwareTracker(PathTracker tracker) {
+        this(tracker, Constants.TRACKER_BUDGET_US);
+    }
+
+    /**
+     *
+     * @param tracker tracker to run
+     * @param budget_us most a tick of the tracker should take
+     */
+    public OverloadAwareTracker(PathTracker tracker, double budget_us) {
+        m_tracker = tracker;
+        m_budget_ns = (long) (budget_us * 1000);
+    }
+
+    @Override
+    public boolean doneWithPath(Vector2 robot_pos) {
+        long start = System.nanoTime();
+        m_tracker.setQuality(m_quality == Quality.HOLD ? Quality.REUSE_SEGMENT : m_quality);
+        boolean done = m_tracker.doneWithPath(robot_pos);
+        m_done_ns = System.nanoTime() - start;
+        return done;
+    }
+
+    @Override
+    public VelocitySetpoint update(Vector2 robot_pos, double robot_angle) {
+        long start = System.nanoTime();
+        Quality quality = m_quality;
+        if(quality == Quality.HOLD && m_have_setpoint && m_held_ticks < Constants.TRACKER_MAX_HELD_TICKS) {
+            m_held_ticks++;
+        } else {
+            if(quality == Quality.HOLD) quality = Quality.REUSE_SEGMENT;
+            m_held_ticks = 0;
+            m_tracker.setQuality(quality);
+            VelocitySetpoint setpoint = m_tracker.update(robot_pos, robot_angle);
+            m_setpoint.left_velocity = setpoint.left_velocity;
+            m_setpoint.right_velocity = setpoint.right_velocity;
+            m_have_setpoint = true;
+        }
+        m_ticks[quality.ordinal()]++;
+        m_last_quality = quality;
+        adapt(System.nanoTime() - start + m_done_ns);
+        m_done_ns = 0;
+        return m_setpoint;
+    }
+
+    private void adapt(long cost_ns) {
+        if(m_ticks_since_drop < Integer.MAX_VALUE) m_ticks_since_drop++;
+        if(cost_ns > m_budget_ns) {
+            m_over_budget++;
+            m_calm_ticks = 0;
+            if(m_quality != Quality.HOLD && m_ticks_since_drop >= Constants.TRACKER_SETTLE_TICKS) {
+                m_quality = QUALITIES[m_quality.ordinal() + 1];
+                m_ticks_since_drop = 0;
+            }
+        } else if(cost_ns < m_budget_ns * Constants.TRACKER_RECOVER_RATIO) {
+            if(++m_calm_ticks >= Constants.TRACKER_RECOVER_TICKS && m_quality != Quality.FULL) {
+                m_quality = QUALITIES[m_quality.ordinal() - 1];
+                m_calm_ticks = 0;
+            }
+        } else {
+            m_calm_ticks = 0;
+        }
+    }
+
+    /**
+     *
+     * @return quality the next tick will run at
+     */
+    public Quality getQuality() {
+        return m_quality;
+    }
+
+    /**
+     *
+     * @return quality the last update ran at
+     */
+    public Quality getLastQuality() {
+        return m_last_quality;
+    }
+
+    /**
+     *
+     * @return updates that ran at a quality
+     */
+    public long getTicks(Quality quality) {
+        return m_ticks[quality.ordinal()];
+    }
+
+    /**
+     *
+     * @return ticks that cost more than the budget
+     */
+    public long getOverBudgetTicks() {
+        return m_over_budget;
+    }
+
+    @Override
+    public void setQuality(Quality quality) {
+        m_quality = quality;
+    }
+
+}
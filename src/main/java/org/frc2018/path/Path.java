@@ -1,91 +1,317 @@
 package org.frc2018.path;
 
-import java.io.FileReader;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
-import com.opencsv.CSVReader;
+import java.io.IOException;
 
+import org.frc2018.Constants;
 import org.frc2018.math.Vector2;
 
 public class Path {
 
-    private Vector2[] coordinates;
-    private double[] target_velocities;
+    /**
+     * How point data is held in memory once loaded.
+     * FLOAT halves the footprint, see {@link FloatPathStorage} for its precision bounds.
+     * SIMPLIFIED drops points that can be rebuilt within {@link Constants#PATH_SIMPLIFY_TOLERANCE},
+     * see {@link SimplifiedPathStorage}.
+     */
+    public enum Precision {
+        DOUBLE,
+        FLOAT,
+        SIMPLIFIED,
+    }
+
+    // parsers keep their buffers between files, one per thread since paths load in parallel
+    private static final ThreadLocal<PathCsvParser> parser = ThreadLocal.withInitial(PathCsvParser::new);
+
+    private PathStorage storage;
 
     private int last_closest_index = 0;
+    private int current_index = 0;
 
     private boolean backwards;
+    private String filepath;
+    private String source;
 
     public Path(String filepath) {
         this(filepath, false);
     }
 
     public Path(String filepath, boolean backwards) {
+        this(filepath, backwards, Precision.DOUBLE);
+    }
+
+    public Path(String filepath, boolean backwards, Precision precision) {
         this.backwards = backwards;
+        this.filepath = filepath;
+        this.source = filepath;
 
-        List<Vector2> temp_coords = new ArrayList<>();
-        List<Double> temp_velo = new ArrayList<>();
         try {
-            CSVReader reader = new CSVReader(new FileReader(filepath));
-            String[] line = reader.readNext();
-            while(line!=null) {
-                temp_coords.add(new Vector2( Double.parseDouble(line[0]), Double.parseDouble(line[1])));
-                temp_velo.add(Double.parseDouble(line[2]));
-                line = reader.readNext();
-            }
-            reader.close();
+            storage = loadStorage(filepath, precision);
+        } catch(Exception e) {
+            e.printStackTrace();
+        }
+
+    }
 
-            coordinates = new Vector2[temp_coords.size()];
-            target_velocities = new double[temp_velo.size()];
+    /**
+     * 
+     * @param storage point data, may be shared with other paths since a path never modifies it
+     * @param backwards true if the path should be driven backwards
+     */
+    public Path(PathStorage storage, boolean backwards) {
+        this.storage = storage;
+        this.backwards = backwards;
+        this.filepath = null;
+        this.source = null;
+    }
+
+    /**
+     * Rebuilds a path from {@link #getSource()}, loading any files at double precision.
+     *
+     * @param source a file, or views of one such as "slice(reversed(a.csv),0,120)", or a
+     *        {@link CompositePath} of such sources
+     * @param backwards true if the path should be driven backwards, a composite takes the
+     *        directions of its segments from the source
+     * @return the path
+     * @throws IOException if a file can't be read
+     * @throws IllegalArgumentException if the source isn't one {@link #getSource()} writes
+     */
+    public static Path fromSource(String source, boolean backwards) throws IOException {
+        int open = source.indexOf('(');
+        if(open < 0 || !source.endsWith(")")) {
+            return fromFile(source, backwards);
+        }
+        String op = source.substring(0, open);
+        String inner = source.substring(open + 1, source.length() - 1);
+        try {
+            switch(op) {
+                case "reversed":
+                    return fromSource(inner, backwards).reversed();
+                case "mirrored":
+                    return fromSource(inner, backwards).mirrored();
+                case "startingAt": {
+                    String[] args = splitLast(inner, 3);
+                    return fromSource(args[0], backwards).startingAt(Double.parseDouble(args[1]),
+                        Double.parseDouble(args[2]), Double.parseDouble(args[3]));
+                }
+                case "slice": {
+                    String[] args = splitLast(inner, 2);
+                    return fromSource(args[0], backwards).slice(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                }
+                case "composite":
+                    return CompositePath.fromSource(inner);
+                default:
+                    return fromFile(source, backwards);
+            }
+        } catch(NumberFormatException e) {
+            throw new IllegalArgumentException("bad path source " + source + ": " + e.getMessage());
+        }
+    }
 
-            for(int i = 0; i < temp_coords.size(); i++) {
-                coordinates[i] = temp_coords.get(i);
-                target_velocities[i] = temp_velo.get(i);
+    // the source and its trailing arguments, taken from the right since the source can hold commas
+    private static String[] splitLast(String inner, int count) {
+        String[] parts = new String[count + 1];
+        int end = inner.length();
+        for(int i = count; i > 0; i--) {
+            int comma = inner.lastIndexOf(',', end - 1);
+            if(comma < 0) {
+                throw new IllegalArgumentException("expected " + count + " arguments after the path in " + inner);
             }
+            parts[i] = inner.substring(comma + 1, end);
+            end = comma;
+        }
+        parts[0] = inner.substring(0, end);
+        return parts;
+    }
 
+    // unlike the constructor, throws when the file can't be read
+    private static Path fromFile(String filepath, boolean backwards) throws IOException {
+        Path path = new Path(loadStorage(filepath, Precision.DOUBLE), backwards);
+        path.filepath = filepath;
+        path.source = filepath;
+        return path;
+    }
 
-        } catch(Exception e) {
-            e.printStackTrace();
+    // a view keeps a source only if the path it was made from has one
+    private Path view(PathStorage view, String op, String args) {
+        Path path = new Path(view, backwards);
+        String source = getSource();
+        if(source != null) path.source = op + "(" + source + args + ")";
+        return path;
+    }
+
+    /**
+     * Reads an x,y,velocity csv file, or a .bpath file from {@link PathCompiler}.
+     * 
+     * @param filepath file to read
+     * @param precision how to store the points
+     * @return the points
+     * @throws IOException if the file can't be read or a line isn't three numbers
+     */
+    public static PathStorage loadStorage(String filepath, Precision precision) throws IOException {
+        if(filepath.endsWith(PathBinary.EXTENSION)) {
+            return PathBinary.read(filepath, precision);
+        }
+        return parser.get().load(filepath, precision);
+    }
+
+    /**
+     * 
+     * @return a store of the given precision holding the points
+     */
+    public static PathStorage createStorage(double[] x, double[] y, double[] velocities, Precision precision) {
+        switch(precision) {
+            case FLOAT:
+                return new FloatPathStorage(x, y, velocities);
+            case SIMPLIFIED:
+                return new SimplifiedPathStorage(x, y, velocities,
+                    Constants.PATH_SIMPLIFY_TOLERANCE, Constants.PATH_SIMPLIFY_VELOCITY_TOLERANCE);
+            default:
+                return new DoublePathStorage(x, y, velocities);
         }
+    }
 
+    /**
+     * 
+     * @return a new path driving these points in the opposite order, see {@link PathViews#reversed}
+     */
+    public Path reversed() {
+        return view(PathViews.reversed(storage), "reversed", "");
+    }
+
+    /**
+     * 
+     * @return a new path mirrored left to right, see {@link PathViews#mirrored(PathStorage)}
+     */
+    public Path mirrored() {
+        return view(PathViews.mirrored(storage), "mirrored", "");
+    }
+
+    /**
+     * 
+     * @return a new path moved to start at a pose, see {@link PathViews#startingAt}
+     */
+    public Path startingAt(double x, double y, double heading) {
+        return view(PathViews.startingAt(storage, x, y, heading), "startingAt", "," + x + "," + y + "," + heading);
+    }
+
+    /**
+     * 
+     * @return a new path of the points first to last inclusive
+     */
+    public Path slice(int first, int last) {
+        return view(PathViews.slice(storage, first, last), "slice", "," + first + "," + last);
     }
 
     public Vector2 getClosestPoint(Vector2 robot_pos) {
-        return coordinates[findClosestPointIndex(robot_pos)];
+        return getPoint(findClosestPointIndex(robot_pos));
     }
 
     public Vector2 getNextPoint(Vector2 robot_pos) {
-        return coordinates[findClosestPointIndex(robot_pos) + 1];
+        return getPoint(findClosestPointIndex(robot_pos) + 1);
     }
 
     public double getClosestPointVelocity(Vector2 robot_pos) {
-        return target_velocities[findClosestPointIndex(robot_pos)];
+        return storage.getVelocity(findClosestPointIndex(robot_pos));
+    }
+
+    public Vector2 getPoint(int index) {
+        return new Vector2(storage.getX(index), storage.getY(index));
+    }
+
+    public double getVelocity(int index) {
+        return storage.getVelocity(index);
     }
 
     public boolean doneWithPath(Vector2 robot_pos) {
-        if(findClosestPointIndex(robot_pos) == coordinates.length - 1) {
+        if(findClosestPointIndex(robot_pos) == storage.size() - 1) {
             return true;
         }
         return false;
     }
 
-    private int findClosestPointIndex(Vector2 robot_pos) {
-        int index = last_closest_index;
-        Vector2 last_closest = coordinates[index];
-        double min_distance = Vector2.distanceBetween(robot_pos, last_closest);
-        for(int i = index; i < coordinates.length; i++) {
-            Vector2 temp = coordinates[i];
-            double temp_distance = Vector2.distanceBetween(robot_pos, temp);
-            if(temp_distance <  min_distance) {
-                index = i;
-                min_distance = temp_distance;
-            }
-        }
+    /**
+     * Finds the closest point at or after the last one found, so the robot never jumps back
+     * to an earlier part of the path that passes near it again.
+     */
+    protected int findClosestPointIndex(Vector2 robot_pos) {
+        return searchClosest(robot_pos, storage.size() - 1);
+    }
+
+    /**
+     * Like {@link #findClosestPointIndex(Vector2)} but only looks a number of points past the
+     * last closest point, for when a full search costs too much.
+     *
+     * @param window points to look past the last closest point
+     */
+    protected int findClosestPointIndex(Vector2 robot_pos, int window) {
+        return searchClosest(robot_pos, (int) Math.min(storage.size() - 1L, (long) getSearchStart() + window));
+    }
+
+    /**
+     * Searches from the last closest point to last inclusive and remembers the result as
+     * the new last closest point.
+     */
+    protected final int searchClosest(Vector2 robot_pos, int last) {
+        int index = storage.closestIndex(robot_pos.x, robot_pos.y, last_closest_index, last);
+        last_closest_index = index;
+        current_index = index;
         return index;
     }
 
+    /**
+     * 
+     * @return index the next closest point search starts from
+     */
+    protected final int getSearchStart() {
+        return last_closest_index;
+    }
+
+    /**
+     * Moves the start of the next closest point search, the caller is responsible for
+     * only moving it forward.
+     */
+    protected final void restartSearchAt(int index) {
+        last_closest_index = index;
+    }
+
+    /**
+     * 
+     * @return index of the closest point found by the most recent query
+     */
+    public int getCurrentIndex() {
+        return current_index;
+    }
+
+    public int getNumPoints() {
+        return storage.size();
+    }
+
+    /**
+     * 
+     * @return index of the last point the robot drives to before it has to stop and change
+     *         direction, the last point of a path with one direction
+     */
+    public int getDirectionEnd() {
+        return storage.size() - 1;
+    }
+
+    public PathStorage getStorage() {
+        return storage;
+    }
+
+    public String getFilepath() {
+        return this.filepath;
+    }
+
+    /**
+     * 
+     * @return the file this path was loaded from, with any views made of it, in a form
+     *         {@link #fromSource} rebuilds, or null for a path made straight from a store
+     */
+    public String getSource() {
+        return this.source;
+    }
+
     public boolean getBackwards() {
         return this.backwards;
     }
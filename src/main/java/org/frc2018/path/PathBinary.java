@@ -0,0 +1,108 @@
+package org.frc2018.path;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The .bpath format written by {@link PathCompiler}: a header followed by the x, y and
+ * velocity arrays as little endian doubles, so loading is one bulk copy per array.
+ *
+ * <pre>
+ * int    magic 'BPTH'
+ * int    version
+ * int    number of points n
+ * double x[n], y[n], velocity[n]
+ * </pre>
+ */
+public class PathBinary {
+
+    public static final String EXTENSION = ".bpath";
+    public static final int MAGIC = 0x48545042; // "BPTH" read little endian
+    public static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private PathBinary() {}
+
+    /**
+     *
+     * @return the file's contents, ready to write in one go
+     */
+    public static ByteBuffer encode(double[] x, double[] y, double[] velocity) {
+        int n = x.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 3 * 8 * n).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(n);
+        buffer.asDoubleBuffer().put(x).put(y).put(velocity);
+        buffer.position(0);
+        return buffer;
+    }
+
+    /**
+     * Reads a .bpath file.
+     *
+     * @param precision how to store the points
+     * @throws IOException if the file can't be read or isn't a .bpath file of this version
+     */
+    public static PathStorage read(String filepath, Path.Precision precision) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filepath + ": too large");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+            buffer.flip();
+            return decode(buffer, filepath, precision);
+        }
+    }
+
+    /**
+     * Reads a .bpath file packaged in the robot jar.
+     *
+     * @param name resource name, for example /paths/example.bpath
+     */
+    public static PathStorage readResource(String name, Path.Precision precision) throws IOException {
+        try(InputStream in = PathBinary.class.getResourceAsStream(name)) {
+            if(in == null) {
+                throw new IOException(name + ": no such resource");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(in.available(), HEADER_BYTES));
+            int read;
+            while((read = in.read(buffer.array(), buffer.position(), buffer.remaining())) >= 0) {
+                buffer.position(buffer.position() + read);
+                if(!buffer.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    bigger.put(buffer);
+                    buffer = bigger;
+                }
+            }
+            buffer.flip();
+            return decode(buffer, name, precision);
+        }
+    }
+
+    private static PathStorage decode(ByteBuffer buffer, String name, Path.Precision precision) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if(buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException(name + ": not a " + EXTENSION + " file");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException(name + ": version " + version + ", expected " + VERSION);
+        }
+        int n = buffer.getInt();
+        if(n < 0 || buffer.remaining() != 3L * 8 * n) {
+            throw new IOException(name + ": " + buffer.remaining() + " bytes of points for " + n + " points");
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] velocity = new double[n];
+        buffer.asDoubleBuffer().get(x).get(y).get(velocity);
+        return Path.createStorage(x, y, velocity, precision);
+    }
+
+}
@@ -0,0 +1,295 @@
+package org.frc2018.path;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates paths from waypoint sources at build time and writes them as {@link PathBinary}
+ * files, so the robot only has to copy arrays in at startup. Run by the compilePaths task
+ * in build.gradle.
+ *
+ * A source is a .path file of "x, y" waypoint lines in inches. Lines starting with # are
+ * comments and KEY=value lines override the settings of the same name in
+ * PathFinder/config.ini for that path. Generation follows PathGenerator.py: points are
+ * injected every POINT_DIST inches, smoothed, given a velocity from the curvature and then
+ * limited by MAX_ACCEL from the end backwards and from STARTING_VEL forwards.
+ *
+ * A manifest in the output directory keeps a hash of each source together with the config,
+ * the format version and the compiled generator classes, so changing the generator also
+ * regenerates every path. Only sources whose hash changed are generated again, in parallel,
+ * and outputs of deleted sources are removed.
+ *
+ * Usage: PathCompiler &lt;source directory&gt; &lt;output directory&gt; [config.ini]
+ */
+public class PathCompiler {
+
+    public static final String SOURCE_EXTENSION = ".path";
+    private static final String MANIFEST = "manifest.txt";
+
+    // classes whose code decides the output, hashed with every source
+    private static final Class<?>[] GENERATOR = {PathCompiler.class, PathSmoother.class, PathBinary.class};
+
+    private static final String[] SETTINGS = {
+        "POINT_DIST", "WEIGHT_DATA", "WEIGHT_SMOOTH", "MAX_VEL", "TURNING_CONST", "STARTING_VEL", "MAX_ACCEL",
+    };
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.out.println("Usage: PathCompiler <source directory> <output directory> [config.ini]");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        java.nio.file.Path sources = java.nio.file.Paths.get(args[0]);
+        java.nio.file.Path output = java.nio.file.Paths.get(args[1]);
+        byte[] config = args.length > 2 ? Files.readAllBytes(java.nio.file.Paths.get(args[2])) : new byte[0];
+        Map<String, Double> defaults = parseSettings(new String(config, StandardCharsets.UTF_8));
+        byte[] generator = readGenerator();
+        Files.createDirectories(output);
+
+        List<java.nio.file.Path> files = new ArrayList<>();
+        if(Files.isDirectory(sources)) {
+            try(Stream<java.nio.file.Path> list = Files.list(sources)) {
+                files = list.filter(p -> p.toString().endsWith(SOURCE_EXTENSION)).sorted().collect(Collectors.toList());
+            }
+        }
+
+        Map<String, String> previous = readManifest(output.resolve(MANIFEST));
+        Map<String, String> current = new TreeMap<>();
+        List<java.nio.file.Path> stale = new ArrayList<>();
+        for(java.nio.file.Path file : files) {
+            String name = outputName(file);
+            String hash = hash(Files.readAllBytes(file), config, generator);
+            current.put(name, hash);
+            if(!hash.equals(previous.get(name)) || !Files.exists(output.resolve(name))) {
+                stale.add(file);
+            }
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        stale.parallelStream().forEach(file -> {
+            java.nio.file.Path target = output.resolve(outputName(file));
+            try {
+                compile(file, target, defaults);
+            } catch(IOException | RuntimeException e) {
+                System.out.println("FAIL " + e.getMessage());
+                failed.incrementAndGet();
+                synchronized(current) {
+                    current.remove(outputName(file));
+                }
+                try {
+                    Files.deleteIfExists(target);
+                } catch(IOException ignored) {}
+            }
+        });
+
+        int removed = 0;
+        for(String name : previous.keySet()) {
+            if(!current.containsKey(name) && Files.deleteIfExists(output.resolve(name))) removed++;
+        }
+        writeManifest(output.resolve(MANIFEST), current);
+
+        System.out.printf("compiled %d, up to date %d, removed %d, failed %d in %.1f ms%n",
+            stale.size() - failed.get(), files.size() - stale.size(), removed, failed.get(),
+            (System.nanoTime() - start) / 1e6);
+        if(failed.get() > 0) System.exit(1);
+    }
+
+    private static String outputName(java.nio.file.Path source) {
+        String name = source.getFileName().toString();
+        return name.substring(0, name.length() - SOURCE_EXTENSION.length()) + PathBinary.EXTENSION;
+    }
+
+    private static void compile(java.nio.file.Path source, java.nio.file.Path target, Map<String, Double> defaults)
+            throws IOException {
+        Map<String, Double> settings = new HashMap<>(defaults);
+        List<double[]> waypoints = new ArrayList<>();
+        List<String> lines = Files.readAllLines(source, StandardCharsets.UTF_8);
+        for(int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if(line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                int equals = line.indexOf('=');
+                if(equals >= 0) {
+                    settings.put(line.substring(0, equals).trim().toUpperCase(), Double.parseDouble(line.substring(equals + 1).trim()));
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if(fields.length != 2) {
+                    throw new IOException(source + ":" + (i + 1) + ": expected x, y");
+                }
+                waypoints.add(new double[] {Double.parseDouble(fields[0].trim()), Double.parseDouble(fields[1].trim())});
+            } catch(NumberFormatException e) {
+                throw new IOException(source + ":" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        for(String setting : SETTINGS) {
+            if(!settings.containsKey(setting)) {
+                throw new IOException(source + ": " + setting + " is not set here or in the config");
+            }
+        }
+        if(waypoints.size() < 2) {
+            throw new IOException(source + ": needs at least two waypoints");
+        }
+
+        double[][] path = generate(waypoints, settings);
+        java.nio.file.Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            java.nio.ByteBuffer contents = PathBinary.encode(path[0], path[1], path[2]);
+            while(contents.hasRemaining()) channel.write(contents);
+        }
+        Files.move(temporary, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     *
+     * @return x, y and velocity arrays
+     */
+    static double[][] generate(List<double[]> waypoints, Map<String, Double> settings) {
+        double spacing = settings.get("POINT_DIST");
+        double max_velocity = settings.get("MAX_VEL");
+        double turning = settings.get("TURNING_CONST");
+        double max_accel = settings.get("MAX_ACCEL");
+
+        // inject points every spacing inches along each leg
+        List<double[]> injected = new ArrayList<>();
+        for(int i = 0; i < waypoints.size() - 1; i++) {
+            double[] a = waypoints.get(i);
+            double[] b = waypoints.get(i + 1);
+            double distance = Math.hypot(b[0] - a[0], b[1] - a[1]);
+            for(double j = 0; j < distance; j += spacing) {
+                injected.add(new double[] {a[0] + j / distance * (b[0] - a[0]), a[1] + j / distance * (b[1] - a[1])});
+            }
+        }
+        injected.add(waypoints.get(waypoints.size() - 1));
+        int n = injected.size();
+        double[] raw_x = new double[n];
+        double[] raw_y = new double[n];
+        for(int i = 0; i < n; i++) {
+            raw_x[i] = injected.get(i)[0];
+            raw_y[i] = injected.get(i)[1];
+        }
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        new PathSmoother(settings.get("WEIGHT_DATA"), settings.get("WEIGHT_SMOOTH")).smooth(raw_x, raw_y, x, y);
+
+        // curvature from the circle through each point and its neighbours, straight at the ends
+        double[] velocity = new double[n];
+        for(int i = 0; i < n; i++) {
+            double curvature = 0;
+            if(i > 0 && i < n - 1) {
+                double ax = x[i] - x[i - 1], ay = y[i] - y[i - 1];
+                double bx = x[i + 1] - x[i], by = y[i + 1] - y[i];
+                double cx = x[i + 1] - x[i - 1], cy = y[i + 1] - y[i - 1];
+                double product = Math.hypot(ax, ay) * Math.hypot(bx, by) * Math.hypot(cx, cy);
+                curvature = product > 0 ? 2.0 * Math.abs(ax * by - ay * bx) / product : 0;
+            }
+            velocity[i] = curvature > 0 ? Math.min(max_velocity, turning / curvature) : max_velocity;
+        }
+
+        // slow down in time for the end
+        velocity[n - 1] = 0;
+        for(int i = n - 2; i >= 0; i--) {
+            double step = Math.hypot(x[i + 1] - x[i], y[i + 1] - y[i]);
+            velocity[i] = Math.min(velocity[i], Math.sqrt(velocity[i + 1] * velocity[i + 1] + 2 * max_accel * step));
+        }
+        // speed up from the starting velocity, stopping where it first catches up like PathGenerator.py
+        velocity[0] = settings.get("STARTING_VEL");
+        for(int i = 1; i < n; i++) {
+            double step = Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+            double reachable = Math.sqrt(velocity[i - 1] * velocity[i - 1] + 2 * max_accel * step);
+            if(reachable >= velocity[i]) break;
+            velocity[i] = reachable;
+        }
+        return new double[][] {x, y, velocity};
+    }
+
+    /**
+     * Reads KEY=value lines, ignoring [sections] and comments.
+     */
+    static Map<String, Double> parseSettings(String text) {
+        Map<String, Double> settings = new HashMap<>();
+        String[] lines = text.split("\r?\n");
+        for(int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if(line.isEmpty() || line.startsWith("#") || line.startsWith(";") || line.startsWith("[")) continue;
+            int equals = line.indexOf('=');
+            if(equals < 0) continue;
+            String value = line.substring(equals + 1).trim();
+            try {
+                settings.put(line.substring(0, equals).trim().toUpperCase(), Double.parseDouble(value));
+            } catch(NumberFormatException e) {
+                // file names and other text settings aren't used here
+            }
+        }
+        return settings;
+    }
+
+    /**
+     *
+     * @return bytes of the {@link #GENERATOR} class files
+     */
+    private static byte[] readGenerator() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        for(Class<?> generator : GENERATOR) {
+            String name = generator.getSimpleName() + ".class";
+            try(InputStream in = generator.getResourceAsStream(name)) {
+                if(in == null) throw new IOException(name + ": class file not found");
+                int read;
+                while((read = in.read(chunk)) >= 0) bytes.write(chunk, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String hash(byte[] source, byte[] config, byte[] generator) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(source);
+            digest.update(config);
+            digest.update((byte) PathBinary.VERSION);
+            digest.update(generator);
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> readManifest(java.nio.file.Path manifest) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        if(!Files.exists(manifest)) return entries;
+        for(String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            int space = line.lastIndexOf(' ');
+            if(space > 0) entries.put(line.substring(0, space), line.substring(space + 1));
+        }
+        return entries;
+    }
+
+    private static void writeManifest(java.nio.file.Path manifest, Map<String, String> entries) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(Map.Entry<String, String> entry : entries.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        Files.write(manifest, lines, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.frc2018.path;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.opencsv.CSVReader;
+
+/**
+ * Times {@link PathCsvParser} against the opencsv loader it replaced on generated path
+ * files and checks that both read exactly the same numbers.
+ *
+ * Usage: PathCsvBenchmark [rows...]
+ */
+public class PathCsvBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {1000, 100000, 1000000, 3000000};
+        if(args.length > 0) {
+            sizes = new int[args.length];
+            for(int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("rows       MB  opencsv ms  parser ms  parallel ms (" + threads + ")  parser bytes/file  mismatches");
+        for(int rows : sizes) {
+            java.nio.file.Path file = Files.createTempFile("path-benchmark", ".csv");
+            try {
+                write(file, rows);
+                String filepath = file.toString();
+                int repeats = Math.max(1, 2000000 / rows);
+
+                PathStorage expected = null;
+                long opencsv_ns = Long.MAX_VALUE;
+                for(int r = 0; r < repeats + 1; r++) {
+                    long start = System.nanoTime();
+                    expected = loadOpenCsv(filepath);
+                    opencsv_ns = Math.min(opencsv_ns, System.nanoTime() - start);
+                }
+
+                PathCsvParser parser = new PathCsvParser();
+                PathStorage parsed = null;
+                long parser_ns = Long.MAX_VALUE;
+                for(int r = 0; r < repeats + 1; r++) {
+                    long start = System.nanoTime();
+                    parsed = parser.loadSequential(filepath, Path.Precision.DOUBLE);
+                    parser_ns = Math.min(parser_ns, System.nanoTime() - start);
+                }
+
+                // the steady state allocation of parsing alone, without the arrays handed out
+                parser.read(filepath);
+                long allocated = allocatedBytes();
+                parser.read(filepath);
+                allocated = allocatedBytes() - allocated;
+
+                PathStorage parallel = null;
+                long parallel_ns = Long.MAX_VALUE;
+                for(int r = 0; r < repeats + 1; r++) {
+                    long start = System.nanoTime();
+                    parallel = PathCsvParser.loadParallel(filepath, Path.Precision.DOUBLE, threads);
+                    parallel_ns = Math.min(parallel_ns, System.nanoTime() - start);
+                }
+
+                int mismatches = Math.abs(expected.size() - parsed.size()) + Math.abs(expected.size() - parallel.size());
+                for(int i = 0; i < Math.min(expected.size(), Math.min(parsed.size(), parallel.size())); i++) {
+                    if(!same(expected, parsed, i)) mismatches++;
+                    if(!same(expected, parallel, i)) mismatches++;
+                }
+                System.out.printf("%-9d %5.1f  %10.1f  %9.1f  %15.1f  %17d  %10d%n", rows, Files.size(file) / 1e6,
+                    opencsv_ns / 1e6, parser_ns / 1e6, parallel_ns / 1e6, allocated, mismatches);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static boolean same(PathStorage a, PathStorage b, int i) {
+        return Double.doubleToLongBits(a.getX(i)) == Double.doubleToLongBits(b.getX(i))
+            && Double.doubleToLongBits(a.getY(i)) == Double.doubleToLongBits(b.getY(i))
+            && Double.doubleToLongBits(a.getVelocity(i)) == Double.doubleToLongBits(b.getVelocity(i));
+    }
+
+    /**
+     * A random walk written the way the path generator writes, with a few numbers in other
+     * notations so the slow path gets used too.
+     */
+    private static void write(java.nio.file.Path file, int rows) throws IOException {
+        Random random = new Random(5499);
+        double x = 0, y = 0, heading = 0;
+        try(BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for(int i = 0; i < rows; i++) {
+                heading += random.nextGaussian() * 0.05;
+                x -= 6.0 * Math.sin(heading);
+                y += 6.0 * Math.cos(heading);
+                double velocity = 36 + 84 * random.nextDouble();
+                if(i % 1000 == 999) {
+                    writer.write(x + "," + y + "," + velocity + "\n");
+                } else if(i % 1000 == 500) {
+                    writer.write(String.format("%.6e, %.4f ,%.1f\r\n", x, y, velocity));
+                } else {
+                    writer.write(String.format("%.4f,%.4f,%.4f\n", x, y, velocity));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("restriction")
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * The loader Path used before {@link PathCsvParser}.
+     */
+    private static PathStorage loadOpenCsv(String filepath) throws IOException {
+        List<Double> temp_x = new ArrayList<>();
+        List<Double> temp_y = new ArrayList<>();
+        List<Double> temp_velo = new ArrayList<>();
+        try(CSVReader reader = new CSVReader(new FileReader(filepath))) {
+            String[] line = reader.readNext();
+            while(line != null) {
+                temp_x.add(Double.parseDouble(line[0]));
+                temp_y.add(Double.parseDouble(line[1]));
+                temp_velo.add(Double.parseDouble(line[2]));
+                line = reader.readNext();
+            }
+        }
+        double[] x = new double[temp_x.size()];
+        double[] y = new double[temp_y.size()];
+        double[] velocities = new double[temp_velo.size()];
+        for(int i = 0; i < x.length; i++) {
+            x[i] = temp_x.get(i);
+            y[i] = temp_y.get(i);
+            velocities[i] = temp_velo.get(i);
+        }
+        return new DoublePathStorage(x, y, velocities);
+    }
+
+}
@@ -0,0 +1,321 @@
+package org.frc2018.path;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.frc2018.Constants;
+
+/**
+ * Reads x,y,velocity csv path files straight from bytes into primitive arrays.
+ *
+ * A parser keeps its read buffer and point arrays between files, so loading a file only
+ * allocates the arrays handed to the new {@link PathStorage}. A number whose digits fit in
+ * 53 bits and whose power of ten is at most 10^22 either way is converted with one multiply
+ * or divide, which rounds correctly since both operands are exact doubles (Clinger's fast
+ * path). Anything else, like a number with more digits, goes through {@link Double#parseDouble},
+ * so the result is always the same as it gives.
+ *
+ * Files of at least {@link Constants#PATH_CSV_PARALLEL_BYTES} are memory mapped and split
+ * at line breaks into one chunk per processor, parsed in parallel.
+ *
+ * The accepted format matches the opencsv reader this replaces: every line needs at least
+ * three comma separated numbers, extra columns are ignored and errors name the file and line.
+ * A parser is not thread safe.
+ */
+public class PathCsvParser {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    private final ByteBuffer m_buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final Chunk m_points = new Chunk(1024);
+
+    /**
+     * Reads a file, in parallel if it is large.
+     *
+     * @param precision how to store the points
+     * @throws IOException if the file can't be read or a line isn't three numbers
+     */
+    public PathStorage load(String filepath, Path.Precision precision) throws IOException {
+        if(Files.size(Paths.get(filepath)) >= Constants.PATH_CSV_PARALLEL_BYTES) {
+            return loadParallel(filepath, precision, Runtime.getRuntime().availableProcessors());
+        }
+        return loadSequential(filepath, precision);
+    }
+
+    /**
+     * Reads a file through the reusable buffer on the calling thread.
+     */
+    public PathStorage loadSequential(String filepath, Path.Precision precision) throws IOException {
+        int size = read(filepath);
+        return Path.createStorage(Arrays.copyOf(m_points.x, size), Arrays.copyOf(m_points.y, size),
+            Arrays.copyOf(m_points.velocity, size), precision);
+    }
+
+    /**
+     * Reads a file into the parser's own arrays.
+     *
+     * @return number of points read, they stay in the parser until the next read
+     */
+    int read(String filepath) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            read(channel, filepath);
+        }
+        return m_points.size;
+    }
+
+    private void read(FileChannel channel, String filepath) throws IOException {
+        m_points.clear();
+        m_buffer.clear();
+        while(true) {
+            boolean end_of_file = channel.read(m_buffer) < 0;
+            int limit = m_buffer.position();
+            // only whole lines are parsed, the rest waits for the next read
+            int stop = end_of_file ? limit : lastLineEnd(m_buffer, limit);
+            if(!end_of_file && stop == 0 && limit == m_buffer.capacity()) {
+                throw new IOException(filepath + ":" + (m_points.lines + 1) + ": line longer than " + BUFFER_BYTES + " bytes");
+            }
+            if(!m_points.parse(m_buffer, 0, stop)) {
+                throw m_points.error(filepath, 0);
+            }
+            if(end_of_file) return;
+            m_buffer.limit(limit);
+            m_buffer.position(stop);
+            m_buffer.compact();
+        }
+    }
+
+    /**
+     * Reads a file by mapping it and parsing chunks of it on separate threads.
+     *
+     * @param chunks number of pieces to split the file into
+     */
+    public static PathStorage loadParallel(String filepath, Path.Precision precision, int chunks) throws IOException {
+        MappedByteBuffer mapped;
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filepath + ": too large to map");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int size = mapped.limit();
+        chunks = Math.max(1, Math.min(chunks, size / BUFFER_BYTES + 1));
+
+        // each chunk starts just after a line break, so no line is split
+        int[] bounds = new int[chunks + 1];
+        bounds[chunks] = size;
+        for(int c = 1; c < chunks; c++) {
+            int position = Math.max(bounds[c - 1], (int) ((long) size * c / chunks));
+            while(position < size && position > 0 && mapped.get(position - 1) != '\n') position++;
+            bounds[c] = position;
+        }
+
+        Chunk[] parsed = new Chunk[chunks];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            Chunk chunk = new Chunk((bounds[c + 1] - bounds[c]) / 16 + 16);
+            chunk.parse(mapped, bounds[c], bounds[c + 1]);
+            parsed[c] = chunk;
+        });
+
+        int total = 0;
+        int lines = 0;
+        for(Chunk chunk : parsed) {
+            if(chunk.error_message != null) {
+                throw chunk.error(filepath, lines);
+            }
+            total += chunk.size;
+            lines += chunk.lines;
+        }
+        double[] x = new double[total];
+        double[] y = new double[total];
+        double[] velocity = new double[total];
+        int offset = 0;
+        for(Chunk chunk : parsed) {
+            System.arraycopy(chunk.x, 0, x, offset, chunk.size);
+            System.arraycopy(chunk.y, 0, y, offset, chunk.size);
+            System.arraycopy(chunk.velocity, 0, velocity, offset, chunk.size);
+            offset += chunk.size;
+        }
+        return Path.createStorage(x, y, velocity, precision);
+    }
+
+    /**
+     *
+     * @return index just past the last line break before limit, 0 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer buffer, int limit) {
+        for(int i = limit - 1; i >= 0; i--) {
+            if(buffer.get(i) == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Points parsed from one run of lines, with the line count so errors can be placed in the file.
+     */
+    private static class Chunk {
+        double[] x;
+        double[] y;
+        double[] velocity;
+        int size = 0;
+        int lines = 0;
+
+        String error_message = null;
+        int error_line = 0;
+
+        private byte[] text = new byte[64];
+
+        Chunk(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            velocity = new double[capacity];
+        }
+
+        void clear() {
+            size = 0;
+            lines = 0;
+            error_message = null;
+        }
+
+        IOException error(String filepath, int first_line) {
+            return new IOException(filepath + ":" + (first_line + error_line) + ": " + error_message);
+        }
+
+        /**
+         * Parses the lines in [start, end), the last of which may have no line break.
+         *
+         * @return false if a line was bad, the error is kept and parsing stops
+         */
+        boolean parse(ByteBuffer buffer, int start, int end) {
+            int position = start;
+            while(position < end) {
+                int line_end = position;
+                while(line_end < end && buffer.get(line_end) != '\n') line_end++;
+                int content_end = line_end;
+                if(content_end > position && buffer.get(content_end - 1) == '\r') content_end--;
+                lines++;
+
+                int first_comma = find(buffer, position, content_end, (byte) ',');
+                int second_comma = find(buffer, first_comma + 1, content_end, (byte) ',');
+                if(second_comma >= content_end) {
+                    return fail("expected x,y,velocity");
+                }
+                int third_comma = find(buffer, second_comma + 1, content_end, (byte) ',');
+
+                if(size == x.length) grow();
+                try {
+                    x[size] = parseNumber(buffer, position, first_comma);
+                    y[size] = parseNumber(buffer, first_comma + 1, second_comma);
+                    velocity[size] = parseNumber(buffer, second_comma + 1, third_comma);
+                } catch(NumberFormatException e) {
+                    return fail(e.getMessage());
+                }
+                size++;
+                position = line_end + 1;
+            }
+            return true;
+        }
+
+        private boolean fail(String message) {
+            error_message = message;
+            error_line = lines;
+            return false;
+        }
+
+        private void grow() {
+            int capacity = x.length * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            velocity = Arrays.copyOf(velocity, capacity);
+        }
+
+        private static int find(ByteBuffer buffer, int from, int to, byte value) {
+            while(from < to && buffer.get(from) != value) from++;
+            return from;
+        }
+
+        /**
+         * Parses [from, to) as a decimal number, with the fast path when it is exact.
+         */
+        private double parseNumber(ByteBuffer buffer, int from, int to) {
+            while(from < to && buffer.get(from) <= ' ') from++;
+            while(to > from && buffer.get(to - 1) <= ' ') to--;
+            int i = from;
+            boolean negative = false;
+            if(i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean any_digits = false;
+            boolean point = false;
+            for(; i < to; i++) {
+                byte c = buffer.get(i);
+                if(c == '.' && !point) {
+                    point = true;
+                    continue;
+                }
+                if(c < '0' || c > '9') break;
+                any_digits = true;
+                if(mantissa == 0 && c == '0') {
+                    // leading zeros only move the decimal point
+                    if(point) exponent--;
+                    continue;
+                }
+                if(significant == 18) return parseSlow(buffer, from, to);
+                mantissa = mantissa * 10 + (c - '0');
+                significant++;
+                if(point) exponent--;
+            }
+            if(!any_digits) return parseSlow(buffer, from, to);
+
+            if(i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+                i++;
+                boolean negative_exponent = false;
+                if(i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                    negative_exponent = buffer.get(i) == '-';
+                    i++;
+                }
+                int written = 0;
+                int exponent_digits = 0;
+                for(; i < to && buffer.get(i) >= '0' && buffer.get(i) <= '9'; i++) {
+                    if(written < 10000) written = written * 10 + (buffer.get(i) - '0');
+                    exponent_digits++;
+                }
+                if(exponent_digits == 0) return parseSlow(buffer, from, to);
+                exponent += negative_exponent ? -written : written;
+            }
+            if(i != to) return parseSlow(buffer, from, to);
+
+            if(mantissa == 0) return negative ? -0.0 : 0.0;
+            if(mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+                return parseSlow(buffer, from, to);
+            }
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        private double parseSlow(ByteBuffer buffer, int from, int to) {
+            int length = to - from;
+            if(length > text.length) text = new byte[length];
+            for(int i = 0; i < length; i++) text[i] = buffer.get(from + i);
+            return Double.parseDouble(new String(text, 0, length, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+}
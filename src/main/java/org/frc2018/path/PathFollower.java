@@ -1,97 +1,150 @@
 package org.frc2018.path;
 
-import java.util.Map;
-import java.util.Optional;
-
 import org.frc2018.Constants;
 import org.frc2018.math.Vector2;
 import org.frc2018.path.Path;
 
-public class PathFollower {
-
-    private Path m_path;
-    private Vector2 last_lookahead;
+/**
+ * Pure pursuit with a fixed lookahead distance. Each update aims at the point where a
+ * circle of the lookahead radius around the robot leaves the path, and drives the arc
+ * through it at the velocity of the closest point.
+ *
+ * The lookahead point only moves forward along the path and is searched for at most
+ * {@link Constants#PATH_SEARCH_WINDOW} segments past the closest point, and never past
+ * {@link Path#getDirectionEnd()}. Within the lookahead of that point it aims at it.
+ *
+ * Below {@link PathTracker.Quality#FULL} the closest point search only looks
+ * {@link Constants#TRACKER_SMALL_WINDOW} points ahead, and at
+ * {@link PathTracker.Quality#REUSE_SEGMENT} the lookahead is only looked for on the segment
+ * it was last on and the few after it.
+ */
+public class PathFollower implements PathTracker {
+
+    protected final Path m_path;
+    private final VelocitySetpoint m_setpoint = new VelocitySetpoint();
+
+    // lookahead point and where it is on the path, segment index plus fraction
+    private double m_lookahead_x;
+    private double m_lookahead_y;
+    private int m_lookahead_segment = 0;
+    private double m_lookahead_t = 0;
+
+    private Quality m_quality = Quality.FULL;
 
     public PathFollower(Path path) {
         m_path = path;
-        last_lookahead = new Vector2(0, 0);
+        PathStorage storage = path.getStorage();
+        int first = Math.min(1, storage.size() - 1);
+        m_lookahead_x = storage.getX(first);
+        m_lookahead_y = storage.getY(first);
     }
 
-    private Vector2 calculateLookahead(Vector2 robot_pos) {
-        Vector2 closest = m_path.getClosestPoint(robot_pos);
-        Vector2 next = m_path.getNextPoint(robot_pos);
-        Vector2 d = Vector2.subtract(next, closest);
-        Vector2 f = Vector2.subtract(closest, robot_pos);
-        double a = Vector2.dot(d,d);
-        double b = 2.0 * Vector2.dot(f, d);
-        double c = Vector2.dot(f, f) - Math.pow(Constants.LOOK_AHEAD_DISTANCE, 2);
-        double dis = b*b - 4.0 * a * c;
-
-        if(dis < 0) {
-            // return new Vector2(0, 0);
-            return last_lookahead;
-        } else {
-            dis = Math.sqrt(dis);
-            double t1 = (-b - dis) / (2 * a);
-            double t2 = (-b + dis) / (2 * a);
-
-            if(t1 >= 0 && t1 <= 1) {
-                // return t1 intersection
-                d.multiply(t1);
-                Vector2 new_look_ahead = Vector2.add(closest, d);
-                last_lookahead = Vector2.copyVector(new_look_ahead);
-                return new_look_ahead;
-            }
-            if(t2 >= 0 && t2 <= 1) {
-                // return t2 intersection
-                d.multiply(t2);
-                Vector2 new_look_ahead = Vector2.add(closest, d);
-                last_lookahead = Vector2.copyVector(new_look_ahead);
-                return last_lookahead;
-            }
-
-            // no intersection
-            return last_lookahead;
-        }
-
+    /**
+     *
+     * @param velocity path velocity at the closest point, inches per second
+     * @return lookahead distance in inches
+     */
+    protected double getLookaheadDistance(double velocity) {
+        return Constants.LOOK_AHEAD_DISTANCE;
     }
 
-    private double calculateCurvature(Vector2 robot_pos, Vector2 look_ahead, double robot_angle) {
-        // calculate curvature
-        double a = -Math.tan(robot_angle);
-        double b = 1;
-        double c = Math.tan(robot_angle) * robot_pos.x - robot_pos.y;
-        double x = Math.abs(a * look_ahead.x + b * look_ahead.y + c) / (Math.sqrt(a * a + b * b));
-        double curvature = (2.0 * x) / (Math.pow(Constants.LOOK_AHEAD_DISTANCE, 2));
-
-        // calculate side mult
-        double side = Math.signum(Math.sin(robot_angle) * (look_ahead.x - robot_pos.x) - Math.cos(robot_angle) * (look_ahead.y - robot_pos.y));
-        
-        // return
-        return curvature * side;
+    /**
+     *
+     * @param segments most segments to look at
+     */
+    private void updateLookahead(double robot_x, double robot_y, int closest, double distance, int segments) {
+        PathStorage storage = m_path.getStorage();
+        // never past a change of direction, the robot stops there first
+        int last = m_path.getDirectionEnd();
+        double end_x = storage.getX(last) - robot_x;
+        double end_y = storage.getY(last) - robot_y;
+        if(end_x * end_x + end_y * end_y <= distance * distance) {
+            m_lookahead_x = storage.getX(last);
+            m_lookahead_y = storage.getY(last);
+            m_lookahead_segment = last;
+            m_lookahead_t = 0;
+            return;
+        }
+
+        int first = Math.max(closest, m_lookahead_segment);
+        int end = Math.min(last, first + segments);
+        for(int i = first; i < end; i++) {
+            double ax = storage.getX(i);
+            double ay = storage.getY(i);
+            double dx = storage.getX(i + 1) - ax;
+            double dy = storage.getY(i + 1) - ay;
+            double fx = ax - robot_x;
+            double fy = ay - robot_y;
+            double a = dx * dx + dy * dy;
+            if(a == 0) continue;
+            double b = 2.0 * (fx * dx + fy * dy);
+            double c = fx * fx + fy * fy - distance * distance;
+            double discriminant = b * b - 4.0 * a * c;
+            if(discriminant < 0) continue;
+            // the far intersection is where the path leaves the circle
+            double t = (-b + Math.sqrt(discriminant)) / (2.0 * a);
+            if(t < 0 || t > 1) continue;
+            if(i == m_lookahead_segment && t < m_lookahead_t) continue;
+            m_lookahead_x = ax + t * dx;
+            m_lookahead_y = ay + t * dy;
+            m_lookahead_segment = i;
+            m_lookahead_t = t;
+            return;
+        }
+        // off the path by more than the lookahead, keep aiming at the last point found
     }
 
+    @Override
     public VelocitySetpoint update(Vector2 robot_pos, double robot_angle) {
-        Vector2 lookahead = calculateLookahead(robot_pos);
-        double curvature = calculateCurvature(robot_pos, lookahead, robot_angle);
-        VelocitySetpoint set = new VelocitySetpoint();
-        set.left_velocity = m_path.getClosestPointVelocity(robot_pos) * (2 + curvature * Constants.TRACK_WIDTH) / 2.0;
-        set.right_velocity = m_path.getClosestPointVelocity(robot_pos) * (2 + curvature * Constants.TRACK_WIDTH) / 2.0;
-        if(m_path.getBackwards()) {
-            set.left_velocity *= -1;
-            set.right_velocity *= -1;
+        int closest = findClosestPointIndex(robot_pos);
+        double velocity = m_path.getVelocity(closest);
+        updateLookahead(robot_pos.x, robot_pos.y, closest, getLookaheadDistance(velocity),
+            m_quality == Quality.REUSE_SEGMENT ? Constants.TRACKER_REUSE_SEGMENTS : Constants.PATH_SEARCH_WINDOW);
+
+        // drive backwards paths as a robot facing the other way
+        boolean backwards = m_path.getBackwards();
+        if(backwards) robot_angle += Math.PI;
+
+        // signed curvature of the arc to the lookahead, positive turns right
+        double dx = m_lookahead_x - robot_pos.x;
+        double dy = m_lookahead_y - robot_pos.y;
+        double right = Math.cos(robot_angle) * dx + Math.sin(robot_angle) * dy;
+        double chord_squared = dx * dx + dy * dy;
+        double curvature = chord_squared > 1e-9 ? 2.0 * right / chord_squared : 0;
+
+        double left_velocity = velocity * (2 + curvature * Constants.TRACK_WIDTH) / 2.0;
+        double right_velocity = velocity * (2 - curvature * Constants.TRACK_WIDTH) / 2.0;
+        if(backwards) {
+            // the leading side's left is the robot's right
+            m_setpoint.left_velocity = -right_velocity;
+            m_setpoint.right_velocity = -left_velocity;
+        } else {
+            m_setpoint.left_velocity = left_velocity;
+            m_setpoint.right_velocity = right_velocity;
         }
-        return set;
+        return m_setpoint;
     }
-    
+
     /*
     public void setPath(Path path) {
         m_path = path;
     }
     */
 
+    @Override
     public boolean doneWithPath(Vector2 robot_pos) {
-        return m_path.doneWithPath(robot_pos);
+        if(m_quality == Quality.FULL) return m_path.doneWithPath(robot_pos);
+        return findClosestPointIndex(robot_pos) == m_path.getNumPoints() - 1;
+    }
+
+    @Override
+    public void setQuality(Quality quality) {
+        m_quality = quality;
+    }
+
+    private int findClosestPointIndex(Vector2 robot_pos) {
+        if(m_quality == Quality.FULL) return m_path.findClosestPointIndex(robot_pos);
+        return m_path.findClosestPointIndex(robot_pos, Constants.TRACKER_SMALL_WINDOW);
     }
 
     public static class VelocitySetpoint {
@@ -99,4 +152,4 @@ public class PathFollower {
         public double right_velocity;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,83 @@
+package org.frc2018.path;
+
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Drives a double copy and a FLOAT or SIMPLIFIED copy of the same path through
+ * {@link PathFollower} with an identical sequence of robot poses and reports how far the
+ * setpoints drift apart, along with the memory each copy holds and the time spent following.
+ *
+ * Usage: PathPrecisionCheck &lt;path.csv&gt; [tolerance in/s] [FLOAT|SIMPLIFIED]
+ *
+ * Exits with 1 if any setpoint differs by more than the tolerance (default 0.01 in/s).
+ */
+public class PathPrecisionCheck {
+
+    public static void main(String[] args) {
+        if(args.length < 1) {
+            System.err.println("usage: PathPrecisionCheck <path.csv> [tolerance] [FLOAT|SIMPLIFIED]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+        Path.Precision precision = args.length > 2 ? Path.Precision.valueOf(args[2]) : Path.Precision.FLOAT;
+
+        Path double_path = new Path(args[0], false, Path.Precision.DOUBLE);
+        Path other_path = new Path(args[0], false, precision);
+        PathFollower double_follower = new PathFollower(double_path);
+        PathFollower other_follower = new PathFollower(other_path);
+
+        // walk the path with a weaving lateral offset and heading error
+        int points = double_path.getNumPoints();
+        int steps = points * 20;
+        double max_difference = 0;
+        double max_point_error = 0;
+        long double_ns = 0;
+        long other_ns = 0;
+        for(int step = 0; step < steps; step++) {
+            double progress = (double) step / steps * (points - 1);
+            int index = (int) progress;
+            int next = Math.min(index + 1, points - 1);
+            double u = progress - index;
+            Vector2 a = double_path.getPoint(index);
+            Vector2 b = double_path.getPoint(next);
+            double offset = 4.0 * Math.sin(step * 0.05);
+            Vector2 robot_pos = new Vector2(a.x + (b.x - a.x) * u + offset, a.y + (b.y - a.y) * u - offset);
+            double robot_angle = Math.atan2(b.y - a.y, b.x - a.x) + 0.2 * Math.cos(step * 0.03);
+
+            // Drive stops asking for setpoints once the last point is closest
+            if(double_follower.doneWithPath(robot_pos) || other_follower.doneWithPath(robot_pos)) {
+                if(double_follower.doneWithPath(robot_pos) != other_follower.doneWithPath(robot_pos)) {
+                    max_difference = Double.POSITIVE_INFINITY;
+                }
+                break;
+            }
+            long start = System.nanoTime();
+            VelocitySetpoint expected = double_follower.update(robot_pos, robot_angle);
+            long middle = System.nanoTime();
+            VelocitySetpoint actual = other_follower.update(robot_pos, robot_angle);
+            other_ns += System.nanoTime() - middle;
+            double_ns += middle - start;
+            max_difference = Math.max(max_difference, Math.abs(expected.left_velocity - actual.left_velocity));
+            max_difference = Math.max(max_difference, Math.abs(expected.right_velocity - actual.right_velocity));
+        }
+        for(int i = 0; i < points; i++) {
+            max_point_error = Math.max(max_point_error, Vector2.distanceBetween(double_path.getPoint(i), other_path.getPoint(i)));
+        }
+
+        System.out.printf("%d points, %d follower updates%n", points, steps);
+        System.out.printf("resident bytes: double %d, %s %d%n", double_path.getStorage().getResidentBytes(),
+            precision.name().toLowerCase(), other_path.getStorage().getResidentBytes());
+        System.out.printf("follower time: double %.1f ms, %s %.1f ms%n", double_ns / 1e6,
+            precision.name().toLowerCase(), other_ns / 1e6);
+        if(other_path.getStorage() instanceof SimplifiedPathStorage) {
+            SimplifiedPathStorage simplified = (SimplifiedPathStorage) other_path.getStorage();
+            System.out.printf("simplified to %d stored points, max deviation %.3f in, max velocity error %.3f in/s%n",
+                simplified.getStoredPoints(), simplified.getMaxDeviation(), simplified.getMaxVelocityError());
+        }
+        System.out.printf("max point rounding %.3e in, max setpoint difference %.3e in/s (tolerance %.3e)%n",
+            max_point_error, max_difference, tolerance);
+        System.exit(max_difference <= tolerance ? 0 : 1);
+    }
+
+}
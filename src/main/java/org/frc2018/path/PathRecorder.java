@@ -0,0 +1,283 @@
+package org.frc2018.path;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.frc2018.Constants;
+
+/**
+ * Records a demonstrated drive and turns it into path files that {@link Path} can load.
+ *
+ * The control thread calls {@link #record} every tick while recording, which only copies
+ * the pose and wheel velocities into a preallocated buffer. {@link #stop()} hands the buffer
+ * to a daemon thread that does the rest off the robot loop:
+ *
+ * <ul>
+ * <li>moves the samples into a frame with the starting pose at the origin facing +y, the
+ *     pose autonomous starts from after a reset</li>
+ * <li>splits the drive wherever it changes direction, the backwards parts are written
+ *     with a _backwards suffix and should be driven with backwards set, for example as
+ *     segments of a {@link CompositePath}</li>
+ * <li>resamples each part every {@link Constants#PATH_RECORD_SPACING} inches along its length</li>
+ * <li>smooths the points and velocities with {@link PathSmoother}</li>
+ * <li>writes x,y,velocity csv files to {@link Constants#PATH_RECORD_DIRECTORY}</li>
+ * </ul>
+ *
+ * A new recording can't start until the previous one has been written.
+ */
+public class PathRecorder {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int HEADING = 2;
+    private static final int LEFT_VELOCITY = 3;
+    private static final int RIGHT_VELOCITY = 4;
+    private static final int WIDTH = 5;
+
+    private final String m_directory;
+    private final double[] m_samples;
+    private final int m_capacity;
+
+    // control thread only
+    private int m_size = 0;
+    private boolean m_recording = false;
+    private long m_dropped = 0;
+
+    // the writer owns m_samples while this is set
+    private volatile boolean m_writing = false;
+    private int m_pending_size = 0;
+
+    private Thread m_thread = null;
+
+    public PathRecorder() {
+        this(Constants.PATH_RECORD_DIRECTORY, (int) Math.ceil(Constants.PATH_RECORD_SECONDS / Constants.LOOP_PERIOD));
+    }
+
+    /**
+     *
+     * @param directory where recorded paths are written
+     * @param capacity most samples in one recording, later ones are dropped
+     */
+    public PathRecorder(String directory, int capacity) {
+        m_directory = directory;
+        m_capacity = capacity;
+        m_samples = new double[capacity * WIDTH];
+    }
+
+    /**
+     * Starts a new recording.
+     *
+     * @return false if the previous recording is still being written
+     */
+    public boolean start() {
+        if(m_recording) return true;
+        if(m_writing) return false;
+        if(m_thread == null) {
+            m_thread = new Thread(this::run, "path-recorder");
+            m_thread.setDaemon(true);
+            m_thread.setPriority(Thread.MIN_PRIORITY);
+            m_thread.start();
+        }
+        m_size = 0;
+        m_dropped = 0;
+        m_recording = true;
+        return true;
+    }
+
+    /**
+     * Ends the recording and queues it to be written.
+     */
+    public void stop() {
+        if(!m_recording) return;
+        m_recording = false;
+        synchronized(this) {
+            m_pending_size = m_size;
+            m_writing = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     *
+     * @param x inches
+     * @param y inches
+     * @param heading degrees, counter clockwise positive
+     * @param left_velocity measured, inches per second
+     * @param right_velocity measured, inches per second
+     */
+    public void record(double x, double y, double heading, double left_velocity, double right_velocity) {
+        if(!m_recording) return;
+        if(m_size == m_capacity) {
+            m_dropped++;
+            return;
+        }
+        int offset = m_size * WIDTH;
+        m_samples[offset + X] = x;
+        m_samples[offset + Y] = y;
+        m_samples[offset + HEADING] = heading;
+        m_samples[offset + LEFT_VELOCITY] = left_velocity;
+        m_samples[offset + RIGHT_VELOCITY] = right_velocity;
+        m_size++;
+    }
+
+    public boolean isRecording() {
+        return m_recording;
+    }
+
+    /**
+     *
+     * @return true while the last recording is still being written
+     */
+    public boolean isWriting() {
+        return m_writing;
+    }
+
+    /**
+     *
+     * @return samples dropped from the current or last recording because the buffer was full
+     */
+    public long getDropped() {
+        return m_dropped;
+    }
+
+    private void run() {
+        while(!Thread.currentThread().isInterrupted()) {
+            int count;
+            synchronized(this) {
+                try {
+                    while(!m_writing) wait();
+                } catch(InterruptedException e) {
+                    break;
+                }
+                count = m_pending_size;
+            }
+            try {
+                write(m_samples, count, m_directory, "recorded_" + System.currentTimeMillis());
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+            m_writing = false;
+        }
+    }
+
+    /**
+     * Turns recorded samples into path files.
+     *
+     * @param samples rows of x, y, heading, left velocity, right velocity
+     * @param count number of rows
+     * @param name file names start with this
+     * @return number of files written
+     */
+    static int write(double[] samples, int count, String directory, String name) throws IOException {
+        if(count < 2) return 0;
+
+        // into the frame autonomous starts in, rotating by minus the starting heading
+        double heading = Math.toRadians(samples[HEADING]);
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double x0 = samples[X];
+        double y0 = samples[Y];
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] velocity = new double[count];
+        for(int i = 0; i < count; i++) {
+            double dx = samples[i * WIDTH + X] - x0;
+            double dy = samples[i * WIDTH + Y] - y0;
+            x[i] = cos * dx + sin * dy;
+            y[i] = -sin * dx + cos * dy;
+            velocity[i] = (samples[i * WIDTH + LEFT_VELOCITY] + samples[i * WIDTH + RIGHT_VELOCITY]) / 2.0;
+        }
+
+        File folder = new File(directory);
+        folder.mkdirs();
+        int written = 0;
+        int first = 0;
+        int direction = 0;
+        int last_moving = 0;
+        for(int i = 0; i < count; i++) {
+            if(Math.abs(velocity[i]) < Constants.PATH_RECORD_STOPPED_VELOCITY) continue;
+            int moving = velocity[i] > 0 ? 1 : -1;
+            if(direction != 0 && moving != direction) {
+                // split where the robot turned around, the slowest sample since it last moved the old way
+                int turn = last_moving;
+                for(int j = last_moving + 1; j < i; j++) {
+                    if(Math.abs(velocity[j]) < Math.abs(velocity[turn])) turn = j;
+                }
+                if(writePart(x, y, velocity, first, turn, direction < 0, folder, name + "_" + written)) written++;
+                first = turn;
+            }
+            direction = moving;
+            last_moving = i;
+        }
+        if(writePart(x, y, velocity, first, count - 1, direction < 0, folder, name + "_" + written)) written++;
+        return written;
+    }
+
+    /**
+     * Resamples, smooths and writes samples first to last inclusive.
+     *
+     * @return false if the part was too short to be a path
+     */
+    private static boolean writePart(double[] x, double[] y, double[] velocity, int first, int last, boolean backwards,
+            File folder, String name) throws IOException {
+        double length = 0;
+        for(int i = first + 1; i <= last; i++) {
+            length += Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+        }
+        if(length < Constants.PATH_RECORD_SPACING) return false;
+
+        int points = (int) Math.round(length / Constants.PATH_RECORD_SPACING) + 1;
+        double spacing = length / (points - 1);
+        double[] path_x = new double[points];
+        double[] path_y = new double[points];
+        double[] path_velocity = new double[points];
+        int sample = first;
+        double sample_distance = 0;
+        double step = 0;
+        for(int p = 0; p < points; p++) {
+            double target = p * spacing;
+            // advance to the recorded step that covers this distance
+            while(sample < last) {
+                step = Math.hypot(x[sample + 1] - x[sample], y[sample + 1] - y[sample]);
+                if(sample_distance + step >= target) break;
+                sample_distance += step;
+                sample++;
+            }
+            if(sample >= last) {
+                path_x[p] = x[last];
+                path_y[p] = y[last];
+                path_velocity[p] = Math.abs(velocity[last]);
+                continue;
+            }
+            double u = step > 0 ? (target - sample_distance) / step : 0;
+            path_x[p] = x[sample] + (x[sample + 1] - x[sample]) * u;
+            path_y[p] = y[sample] + (y[sample + 1] - y[sample]) * u;
+            path_velocity[p] = Math.abs(velocity[sample] + (velocity[sample + 1] - velocity[sample]) * u);
+        }
+
+        PathSmoother smoother = new PathSmoother();
+        double[] smooth_x = new double[points];
+        double[] smooth_y = new double[points];
+        double[] smooth_velocity = new double[points];
+        smoother.smooth(path_x, path_y, smooth_x, smooth_y);
+        smoother.smooth(path_velocity, smooth_velocity);
+        // keep moving until the end, where the generator's paths stop too
+        for(int p = 0; p < points; p++) {
+            smooth_velocity[p] = p == points - 1 ? 0 : Math.max(smooth_velocity[p], Constants.PATH_RECORD_MIN_VELOCITY);
+        }
+
+        File file = new File(folder, name + (backwards ? "_backwards" : "") + ".csv");
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for(int p = 0; p < points; p++) {
+                writer.write(String.format("%.4f,%.4f,%.4f", smooth_x[p], smooth_y[p], smooth_velocity[p]));
+                writer.newLine();
+            }
+        }
+        System.out.printf("Recorded %s: %d points, %.1f inches%s%n", file.getPath(), points, length,
+            backwards ? ", drive backwards" : "");
+        return true;
+    }
+
+}
@@ -0,0 +1,238 @@
+package org.frc2018.path;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.frc2018.Constants;
+
+/**
+ * Smooths injected path points the same way PathGenerator.py does, but solves for the
+ * result directly instead of sweeping until the change drops below a tolerance.
+ *
+ * The sweeps stop changing once every interior point satisfies
+ * wd * (orig[i] - s[i]) + ws * (s[i-1] + s[i+1] - 2 s[i]) = 0 with both ends held at
+ * their original values. That is a tridiagonal system,
+ * -ws s[i-1] + (wd + 2 ws) s[i] - ws s[i+1] = wd orig[i], which the Thomas algorithm
+ * solves in O(n). x and y are independent.
+ *
+ * Long paths are split into sections that are solved in parallel. The matrix is strictly
+ * diagonally dominant, so the effect of a point dies off geometrically with distance. Each
+ * section is solved with a halo of extra points either side, wide enough that the wrong
+ * boundary values at the edge of the halo change the kept points by less than 1e-12 of
+ * the largest coordinate.
+ */
+public class PathSmoother {
+
+    public static final int SECTION_POINTS = 1 << 14;
+
+    private final double m_weight_data;
+    private final double m_weight_smooth;
+    private final int m_halo;
+
+    public PathSmoother() {
+        this(Constants.PATH_SMOOTH_WEIGHT_DATA, Constants.PATH_SMOOTH_WEIGHT_SMOOTH);
+    }
+
+    /**
+     *
+     * @param weight_data pull towards the original points, WEIGHT_DATA in config.ini
+     * @param weight_smooth pull towards the neighbours, WEIGHT_SMOOTH in config.ini
+     */
+    public PathSmoother(double weight_data, double weight_smooth) {
+        if(weight_data <= 0 || weight_smooth < 0) {
+            throw new IllegalArgumentException("weight_data must be positive and weight_smooth not negative");
+        }
+        m_weight_data = weight_data;
+        m_weight_smooth = weight_smooth;
+        // decay per point of the homogeneous solution, the smaller root of ws r^2 - (wd + 2 ws) r + ws = 0
+        double diagonal = weight_data + 2.0 * weight_smooth;
+        double decay = weight_smooth > 0
+            ? (diagonal - Math.sqrt(diagonal * diagonal - 4.0 * weight_smooth * weight_smooth)) / (2.0 * weight_smooth)
+            : 0.0;
+        m_halo = decay > 0 ? (int) Math.ceil(Math.log(1e-12) / Math.log(decay)) + 1 : 1;
+    }
+
+    /**
+     * Smooths both coordinates of a path, sections and coordinates in parallel.
+     *
+     * @param x original x positions
+     * @param y original y positions
+     * @param smooth_x receives the smoothed x positions, may not be x
+     * @param smooth_y receives the smoothed y positions, may not be y
+     */
+    public void smooth(double[] x, double[] y, double[] smooth_x, double[] smooth_y) {
+        int n = x.length;
+        int sections = Math.max(1, (n + SECTION_POINTS - 1) / SECTION_POINTS);
+        IntStream.range(0, 2 * sections).parallel().forEach(task -> {
+            double[] in = task < sections ? x : y;
+            double[] out = task < sections ? smooth_x : smooth_y;
+            int section = task % sections;
+            smoothSection(in, out, section * SECTION_POINTS, Math.min(n, (section + 1) * SECTION_POINTS) - 1);
+        });
+    }
+
+    /**
+     * Smooths one coordinate on the calling thread.
+     *
+     * @param in original values
+     * @param out receives the smoothed values, may not be in
+     */
+    public void smooth(double[] in, double[] out) {
+        if(in.length == 0) return;
+        solve(in, out, 0, in.length - 1, 0, in.length - 1);
+    }
+
+    private void smoothSection(double[] in, double[] out, int first, int last) {
+        if(last < first) return;
+        int from = Math.max(0, first - m_halo);
+        int to = Math.min(in.length - 1, last + m_halo);
+        solve(in, out, from, to, first, last);
+    }
+
+    /**
+     * Solves the system over [from, to] with the values at from and to held fixed and
+     * writes the solution for [keep_first, keep_last] into out.
+     */
+    private void solve(double[] in, double[] out, int from, int to, int keep_first, int keep_last) {
+        int unknowns = to - from - 1;
+        if(unknowns <= 0) {
+            for(int i = keep_first; i <= keep_last; i++) out[i] = in[i];
+            return;
+        }
+        double off = -m_weight_smooth;
+        double diagonal = m_weight_data + 2.0 * m_weight_smooth;
+        double[] upper = new double[unknowns];
+        double[] solution = new double[unknowns];
+
+        // forward sweep, the fixed ends move to the right hand side
+        for(int k = 0; k < unknowns; k++) {
+            int i = from + 1 + k;
+            double rhs = m_weight_data * in[i];
+            if(k == 0) rhs -= off * in[from];
+            if(k == unknowns - 1) rhs -= off * in[to];
+            double pivot = diagonal;
+            if(k > 0) {
+                pivot -= off * upper[k - 1];
+                rhs -= off * solution[k - 1];
+            }
+            upper[k] = off / pivot;
+            solution[k] = rhs / pivot;
+        }
+        // back substitution
+        for(int k = unknowns - 2; k >= 0; k--) {
+            solution[k] -= upper[k] * solution[k + 1];
+        }
+
+        for(int i = keep_first; i <= keep_last; i++) {
+            out[i] = i == from || i == to ? in[i] : solution[i - from - 1];
+        }
+    }
+
+    /**
+     * The sweep loop from PathGenerator.py, kept as a reference for the direct solve.
+     *
+     * @param tolerance stop once a sweep moves all coordinates by less than this in total
+     * @return number of sweeps
+     */
+    public static int smoothIterative(double[] x, double[] y, double[] smooth_x, double[] smooth_y,
+            double weight_data, double weight_smooth, double tolerance) {
+        int n = x.length;
+        System.arraycopy(x, 0, smooth_x, 0, n);
+        System.arraycopy(y, 0, smooth_y, 0, n);
+        int sweeps = 0;
+        double change = tolerance;
+        while(change >= tolerance) {
+            change = 0;
+            for(int i = 1; i < n - 1; i++) {
+                double aux = smooth_x[i];
+                smooth_x[i] += weight_data * (x[i] - smooth_x[i])
+                    + weight_smooth * (smooth_x[i - 1] + smooth_x[i + 1] - 2 * smooth_x[i]);
+                change += Math.abs(aux - smooth_x[i]);
+                aux = smooth_y[i];
+                smooth_y[i] += weight_data * (y[i] - smooth_y[i])
+                    + weight_smooth * (smooth_y[i - 1] + smooth_y[i + 1] - 2 * smooth_y[i]);
+                change += Math.abs(aux - smooth_y[i]);
+            }
+            sweeps++;
+        }
+        return sweeps;
+    }
+
+    /**
+     * Times the direct solve on one thread and in parallel against the sweep loop on
+     * generated paths of 10^3 to 10^6 points.
+     *
+     * Usage: PathSmoother [largest size for the sweep loop, default 100000]
+     */
+    public static void main(String[] args) {
+        int iterative_limit = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        double weight_data = Constants.PATH_SMOOTH_WEIGHT_DATA;
+        double weight_smooth = Constants.PATH_SMOOTH_WEIGHT_SMOOTH;
+        double tolerance = Constants.PATH_SMOOTH_TOLERANCE;
+        PathSmoother smoother = new PathSmoother(weight_data, weight_smooth);
+
+        System.out.println("points    direct ms  parallel ms  sweeps  sweep ms  max difference");
+        for(int n = 1000; n <= 1000000; n *= 10) {
+            double[] x = new double[n];
+            double[] y = new double[n];
+            generate(x, y, new Random(n));
+            double[] direct_x = new double[n];
+            double[] direct_y = new double[n];
+            double[] parallel_x = new double[n];
+            double[] parallel_y = new double[n];
+
+            // warm up so the timings are of compiled code
+            for(int i = 0; i < 3; i++) {
+                smoother.smooth(x, direct_x);
+                smoother.smooth(x, y, parallel_x, parallel_y);
+            }
+            long start = System.nanoTime();
+            smoother.smooth(x, direct_x);
+            smoother.smooth(y, direct_y);
+            double direct_ms = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            smoother.smooth(x, y, parallel_x, parallel_y);
+            double parallel_ms = (System.nanoTime() - start) / 1e6;
+
+            double max_difference = 0;
+            for(int i = 0; i < n; i++) {
+                max_difference = Math.max(max_difference, Math.abs(direct_x[i] - parallel_x[i]));
+                max_difference = Math.max(max_difference, Math.abs(direct_y[i] - parallel_y[i]));
+            }
+            if(n <= iterative_limit) {
+                double[] sweep_x = new double[n];
+                double[] sweep_y = new double[n];
+                start = System.nanoTime();
+                int sweeps = smoothIterative(x, y, sweep_x, sweep_y, weight_data, weight_smooth, tolerance);
+                double sweep_ms = (System.nanoTime() - start) / 1e6;
+                for(int i = 0; i < n; i++) {
+                    max_difference = Math.max(max_difference, Math.abs(direct_x[i] - sweep_x[i]));
+                    max_difference = Math.max(max_difference, Math.abs(direct_y[i] - sweep_y[i]));
+                }
+                System.out.printf("%-9d %10.2f %12.2f %7d %9.1f %15.2e%n",
+                    n, direct_ms, parallel_ms, sweeps, sweep_ms, max_difference);
+            } else {
+                System.out.printf("%-9d %10.2f %12.2f %7s %9s %15.2e%n",
+                    n, direct_ms, parallel_ms, "-", "-", max_difference);
+            }
+        }
+    }
+
+    /**
+     * Fills x and y with a random polyline of straight legs with points every 6 inches,
+     * the way PathGenerator.py injects them.
+     */
+    private static void generate(double[] x, double[] y, Random random) {
+        double heading = 0;
+        int leg_left = 0;
+        for(int i = 1; i < x.length; i++) {
+            if(leg_left-- <= 0) {
+                heading += (random.nextDouble() - 0.5) * Math.PI;
+                leg_left = 5 + random.nextInt(40);
+            }
+            x[i] = x[i - 1] + 6.0 * Math.cos(heading);
+            y[i] = y[i - 1] + 6.0 * Math.sin(heading);
+        }
+    }
+
+}
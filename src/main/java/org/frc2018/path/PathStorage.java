@@ -0,0 +1,63 @@
+package org.frc2018.path;
+
+/**
+ * Backing store for the points of a {@link Path}. Each point has an x and y position
+ * in inches and a target velocity in inches per second.
+ */
+public interface PathStorage {
+
+    /**
+     * 
+     * @return number of points
+     */
+    public int size();
+
+    public double getX(int index);
+
+    public double getY(int index);
+
+    public double getVelocity(int index);
+
+    /**
+     * Finds the point closest to a position among all points from a starting index on.
+     *
+     * @param from first index to consider
+     * @return the first index at or after from with the smallest distance to (x, y)
+     */
+    public default int closestIndex(double x, double y, int from) {
+        return closestIndex(x, y, from, size() - 1);
+    }
+
+    /**
+     * Finds the point closest to a position within a range of indices. Stores that can do
+     * better than checking every point override this.
+     *
+     * @param from first index to consider
+     * @param to last index to consider, inclusive
+     * @return the first index in [from, to] with the smallest distance to (x, y)
+     */
+    public default int closestIndex(double x, double y, int from, int to) {
+        int index = from;
+        // compare squared distances, the ordering is the same and it skips the sqrt
+        double dx = getX(index) - x;
+        double dy = getY(index) - y;
+        double min_distance = dx * dx + dy * dy;
+        for(int i = index; i <= to; i++) {
+            dx = getX(i) - x;
+            dy = getY(i) - y;
+            double temp_distance = dx * dx + dy * dy;
+            if(temp_distance <  min_distance) {
+                index = i;
+                min_distance = temp_distance;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 
+     * @return approximate heap bytes held by this store
+     */
+    public long getResidentBytes();
+
+}
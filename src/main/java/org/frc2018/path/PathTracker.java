@@ -0,0 +1,63 @@
+package org.frc2018.path;
+
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Steers the robot along a {@link Path}, turning the robot's pose into wheel velocities
+ * every tick. Drive makes a new tracker of the chosen {@link Type} when a path starts.
+ *
+ * Poses use the gyro's convention: heading 0 is along +y, counter clockwise positive, so
+ * the robot's forward direction is (-sin, cos). Trackers drive backwards paths with the
+ * back of the robot leading.
+ */
+public interface PathTracker {
+
+    public enum Type {
+        PURE_PURSUIT,
+        ADAPTIVE_PURE_PURSUIT,
+        RAMSETE;
+
+        /**
+         *
+         * @return a new tracker of this type for a path
+         */
+        public PathTracker create(Path path) {
+            switch(this) {
+                case ADAPTIVE_PURE_PURSUIT:
+                    return new AdaptivePurePursuitTracker(path);
+                case RAMSETE:
+                    return new RamseteTracker(path);
+                default:
+                    return new PathFollower(path);
+            }
+        }
+    }
+
+    /**
+     * How much work a tracker may do in a tick, from the full search down to holding the
+     * last setpoint. See {@link OverloadAwareTracker}.
+     */
+    public enum Quality {
+        FULL,
+        SMALL_WINDOW, // closest point search only looks a few points ahead
+        REUSE_SEGMENT, // also only looks for the lookahead near the segment it was last on
+        HOLD, // the last setpoint again, without calling the tracker
+    }
+
+    /**
+     *
+     * @param robot_pos current robot position
+     * @param robot_angle current gyro heading in radians
+     * @return wheel velocities in inches per second, the returned object may be reused between calls
+     */
+    public VelocitySetpoint update(Vector2 robot_pos, double robot_angle);
+
+    public boolean doneWithPath(Vector2 robot_pos);
+
+    /**
+     * Limits the work of the following calls. Trackers without cheaper modes ignore it.
+     */
+    public default void setQuality(Quality quality) {}
+
+}
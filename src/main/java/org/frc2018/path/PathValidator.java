@@ -0,0 +1,229 @@
+package org.frc2018.path;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.frc2018.Constants;
+import org.frc2018.math.GeometryKernels;
+
+/**
+ * Checks every path csv under a directory before it goes anywhere near the robot.
+ *
+ * For each path it verifies that consecutive segments never double back, that point
+ * spacing is within bounds, that the velocity profile never asks for more than the
+ * allowed acceleration between points, and that neither wheel has to exceed
+ * {@link Constants#MAX_SETPOINT} given {@link Constants#TRACK_WIDTH} and the curvature
+ * through each point. Paths are loaded and checked in parallel.
+ *
+ * Usage: PathValidator &lt;directory&gt; [min spacing] [max spacing] [max accel]
+ *
+ * Spacing is in inches (default 0.5 and 12), acceleration in in/s^2 (default 100).
+ * Exits with 1 if any path fails.
+ */
+public class PathValidator {
+
+    public static class Limits {
+        public double min_spacing = 0.5;
+        public double max_spacing = 12.0;
+        public double max_acceleration = 100.0;
+        public double max_wheel_speed = Constants.MAX_SETPOINT;
+        public double track_width = Constants.TRACK_WIDTH;
+    }
+
+    public static class Report {
+        public final String file;
+        public final List<String> errors = new ArrayList<>();
+        public int points;
+        public double length;
+        public double max_wheel_speed;
+
+        Report(String file) {
+            this.file = file;
+        }
+
+        public boolean passed() {
+            return errors.isEmpty();
+        }
+    }
+
+    /**
+     * Loads and checks one path file.
+     *
+     * @param file csv to check
+     * @param limits bounds to check against
+     * @return the findings, never throws
+     */
+    public static Report validate(String file, Limits limits) {
+        Report report = new Report(file);
+        PathStorage storage;
+        try {
+            storage = Path.loadStorage(file, Path.Precision.DOUBLE);
+        } catch(IOException e) {
+            report.errors.add("unreadable: " + e.getMessage());
+            return report;
+        }
+
+        int n = storage.size();
+        report.points = n;
+        if(n < 2) {
+            report.errors.add("needs at least 2 points, has " + n);
+            return report;
+        }
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] v = new double[n];
+        for(int i = 0; i < n; i++) {
+            x[i] = storage.getX(i);
+            y[i] = storage.getY(i);
+            v[i] = storage.getVelocity(i);
+        }
+        double[] lengths = new double[n - 1];
+        GeometryKernels.segmentLengths(x, y, n, lengths);
+        for(double length : lengths) report.length += length;
+
+        Finding spacing = new Finding("point spacing outside [" + limits.min_spacing + ", " + limits.max_spacing + "] in", "in");
+        for(int i = 0; i < n - 1; i++) {
+            if(lengths[i] < limits.min_spacing || lengths[i] > limits.max_spacing) spacing.add(i, lengths[i]);
+        }
+
+        Finding backtrack = new Finding("path doubles back (segments more than 90 degrees apart)", "deg");
+        for(int i = 1; i < n - 1; i++) {
+            double dot = (x[i] - x[i - 1]) * (x[i + 1] - x[i]) + (y[i] - y[i - 1]) * (y[i + 1] - y[i]);
+            if(dot < 0) {
+                double cos = dot / Math.max(lengths[i - 1] * lengths[i], 1e-12);
+                backtrack.add(i, Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, cos)))));
+            }
+        }
+
+        Finding negative = new Finding("negative target velocity", "in/s");
+        for(int i = 0; i < n; i++) {
+            if(v[i] < 0) negative.add(i, v[i]);
+        }
+
+        Finding jump = new Finding("velocity jump above " + limits.max_acceleration + " in/s^2", "in/s^2");
+        for(int i = 0; i < n - 1; i++) {
+            double acceleration = Math.abs(v[i + 1] * v[i + 1] - v[i] * v[i]) / (2.0 * Math.max(lengths[i], 1e-6));
+            if(acceleration > limits.max_acceleration) jump.add(i + 1, acceleration);
+        }
+
+        Finding wheel = new Finding("wheel speed above " + limits.max_wheel_speed + " in/s", "in/s");
+        for(int i = 0; i < n; i++) {
+            double curvature = 0;
+            if(i > 0 && i < n - 1) {
+                curvature = curvature(x[i - 1], y[i - 1], x[i], y[i], x[i + 1], y[i + 1]);
+            }
+            double outer = Math.abs(v[i]) * (1.0 + curvature * limits.track_width / 2.0);
+            report.max_wheel_speed = Math.max(report.max_wheel_speed, outer);
+            if(outer > limits.max_wheel_speed) wheel.add(i, outer);
+        }
+
+        spacing.report(report);
+        backtrack.report(report);
+        negative.report(report);
+        jump.report(report);
+        wheel.report(report);
+        return report;
+    }
+
+    /**
+     *
+     * @return curvature in 1/inches of the circle through three points, 0 if they are collinear
+     */
+    public static double curvature(double x1, double y1, double x2, double y2, double x3, double y3) {
+        double a = Math.hypot(x2 - x1, y2 - y1);
+        double b = Math.hypot(x3 - x2, y3 - y2);
+        double c = Math.hypot(x3 - x1, y3 - y1);
+        double twice_area = Math.abs((x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1));
+        double denominator = a * b * c;
+        return denominator > 1e-12 ? 2.0 * twice_area / denominator : 0.0;
+    }
+
+    /**
+     * Collects the points that fail one check so the report gets one line per check.
+     */
+    private static class Finding {
+        private final String m_description;
+        private final String m_units;
+        private int m_count = 0;
+        private int m_first = -1;
+        private int m_worst_index = -1;
+        private double m_worst = 0;
+
+        Finding(String description, String units) {
+            m_description = description;
+            m_units = units;
+        }
+
+        void add(int index, double value) {
+            if(m_count == 0) m_first = index;
+            if(m_worst_index < 0 || Math.abs(value) > Math.abs(m_worst)) {
+                m_worst = value;
+                m_worst_index = index;
+            }
+            m_count++;
+        }
+
+        void report(Report report) {
+            if(m_count == 0) return;
+            report.errors.add(String.format("%s: %d point(s) from point %d, worst %.2f %s at point %d",
+                m_description, m_count, m_first, m_worst, m_units, m_worst_index));
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 1) {
+            System.err.println("usage: PathValidator <directory> [min spacing] [max spacing] [max accel]");
+            System.exit(2);
+        }
+        Limits limits = new Limits();
+        if(args.length > 1) limits.min_spacing = Double.parseDouble(args[1]);
+        if(args.length > 2) limits.max_spacing = Double.parseDouble(args[2]);
+        if(args.length > 3) limits.max_acceleration = Double.parseDouble(args[3]);
+
+        List<String> files;
+        try(Stream<java.nio.file.Path> walk = Files.walk(Paths.get(args[0]))) {
+            files = walk.filter(file -> file.toString().endsWith(".csv"))
+                .map(java.nio.file.Path::toString)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Report>> futures = new ArrayList<>();
+        for(String file : files) {
+            futures.add(pool.submit(() -> validate(file, limits)));
+        }
+
+        int failed = 0;
+        for(Future<Report> future : futures) {
+            Report report;
+            try {
+                report = future.get();
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            System.out.printf("%s %s: %d points, %.1f in, max wheel speed %.1f in/s%n",
+                report.passed() ? "PASS" : "FAIL", report.file, report.points, report.length, report.max_wheel_speed);
+            for(String error : report.errors) {
+                System.out.println("    " + error);
+            }
+            if(!report.passed()) failed++;
+        }
+        pool.shutdown();
+
+        System.out.printf("%d path(s) checked in %.3f s, %d failed%n", files.size(), (System.nanoTime() - start) / 1e9, failed);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+}
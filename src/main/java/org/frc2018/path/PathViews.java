@@ -0,0 +1,294 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+
+/**
+ * Views of a {@link PathStorage} that present the same points reversed, mirrored, moved or
+ * cut down without copying them, so one stored path can serve all of its variants.
+ *
+ * Views compute each point from the backing store when it is read and can be stacked.
+ * Mirrors and rigid moves keep distances, so their closest point search maps the query
+ * point back into the backing store and uses its search, which keeps the fast search of a
+ * {@link SimplifiedPathStorage}, and so do slices. Reversed views scan their own points.
+ * Reversed views and slices keep their own velocities, profiled again for where they
+ * start and stop.
+ *
+ * {@link #getResidentBytes()} of a view does not count the backing store.
+ */
+public class PathViews {
+
+    private static final long VIEW_BYTES = 32;
+
+    private PathViews() {}
+
+    /**
+     * Drives the points in the opposite order. The velocities are profiled again for the
+     * reversed points the way the path generator does it: capped by
+     * {@link Constants#PATH_TURNING_CONST} over the curvature and the original's top speed,
+     * slowed to a stop at the end and ramped up from the original's starting velocity, both
+     * at {@link Constants#PATH_MAX_ACCEL}. This is the one view that holds an array, one
+     * velocity per point.
+     */
+    public static PathStorage reversed(PathStorage storage) {
+        return new ReversedView(storage);
+    }
+
+    /**
+     * Mirrors across the y axis, turning a path that curves left into one that curves right.
+     */
+    public static PathStorage mirrored(PathStorage storage) {
+        return mirrored(storage, 0, 0, Math.PI / 2);
+    }
+
+    /**
+     * Mirrors across a line.
+     *
+     * @param x a point on the line
+     * @param y a point on the line
+     * @param angle direction of the line in radians from the +x axis
+     */
+    public static PathStorage mirrored(PathStorage storage, double x, double y, double angle) {
+        double cos = Math.cos(2 * angle);
+        double sin = Math.sin(2 * angle);
+        // p' = M (p - q) + q with M the reflection matrix
+        return new AffineView(storage, cos, sin, sin, -cos, x - (cos * x + sin * y), y - (sin * x - cos * y));
+    }
+
+    /**
+     * Rotates counter clockwise about the origin, then translates.
+     *
+     * @param rotation radians, counter clockwise
+     */
+    public static PathStorage transformed(PathStorage storage, double dx, double dy, double rotation) {
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        return new AffineView(storage, cos, -sin, sin, cos, dx, dy);
+    }
+
+    /**
+     * Moves the path rigidly so it starts at a pose.
+     *
+     * @param x where the first point ends up
+     * @param y where the first point ends up
+     * @param heading direction of the first segment afterwards in radians, 0 along +y, counter clockwise positive
+     */
+    public static PathStorage startingAt(PathStorage storage, double x, double y, double heading) {
+        double x0 = storage.getX(0);
+        double y0 = storage.getY(0);
+        double path_heading = storage.size() > 1
+            ? Math.atan2(-(storage.getX(1) - x0), storage.getY(1) - y0) : 0.0;
+        double rotation = heading - path_heading;
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        return new AffineView(storage, cos, -sin, sin, cos, x - (cos * x0 - sin * y0), y - (sin * x0 + cos * y0));
+    }
+
+    /**
+     * The points between two of the original's. Velocities are the original's, except that
+     * a slice ending early slows to a stop at {@link Constants#PATH_MAX_ACCEL} and one
+     * starting late speeds up from the original's starting velocity.
+     *
+     * @param first first point of the original in the slice
+     * @param last last point of the original in the slice, inclusive
+     */
+    public static PathStorage slice(PathStorage storage, int first, int last) {
+        if(first < 0 || last >= storage.size() || last < first) {
+            throw new IndexOutOfBoundsException("slice [" + first + ", " + last + "] of " + storage.size() + " points");
+        }
+        return new SliceView(storage, first, last);
+    }
+
+    /**
+     * Limits a velocity profile to {@link Constants#PATH_MAX_ACCEL} like the generator: slowing
+     * down from the end to the end velocity, then speeding up from the starting velocity until
+     * it catches up with the profile.
+     *
+     * @param velocity velocity at each point, limited in place
+     */
+    private static void limitAcceleration(PathStorage points, double[] velocity, double start_velocity,
+            double end_velocity) {
+        int n = velocity.length;
+        if(n == 0) return;
+        velocity[n - 1] = Math.min(velocity[n - 1], end_velocity);
+        for(int i = n - 2; i >= 0; i--) {
+            double step = Math.hypot(points.getX(i + 1) - points.getX(i), points.getY(i + 1) - points.getY(i));
+            velocity[i] = Math.min(velocity[i],
+                Math.sqrt(velocity[i + 1] * velocity[i + 1] + 2 * Constants.PATH_MAX_ACCEL * step));
+        }
+        velocity[0] = Math.min(velocity[0], start_velocity);
+        for(int i = 1; i < n; i++) {
+            double step = Math.hypot(points.getX(i) - points.getX(i - 1), points.getY(i) - points.getY(i - 1));
+            double reachable = Math.sqrt(velocity[i - 1] * velocity[i - 1] + 2 * Constants.PATH_MAX_ACCEL * step);
+            if(reachable >= velocity[i]) break;
+            velocity[i] = reachable;
+        }
+    }
+
+    private static class ReversedView implements PathStorage {
+        private final PathStorage m_base;
+        private final int m_last;
+        private final double[] m_velocity;
+
+        ReversedView(PathStorage base) {
+            m_base = base;
+            m_last = base.size() - 1;
+            m_velocity = profile();
+        }
+
+        /**
+         * The generator's velocity profile, see PathCompiler.generate. Curvature doesn't
+         * depend on direction but the acceleration limits do.
+         */
+        private double[] profile() {
+            int n = size();
+            double[] velocity = new double[n];
+            if(n == 0) return velocity;
+            double max_velocity = 0;
+            for(int i = 0; i < n; i++) max_velocity = Math.max(max_velocity, m_base.getVelocity(i));
+
+            for(int i = 0; i < n; i++) {
+                double curvature = 0;
+                if(i > 0 && i < n - 1) {
+                    double ax = getX(i) - getX(i - 1), ay = getY(i) - getY(i - 1);
+                    double bx = getX(i + 1) - getX(i), by = getY(i + 1) - getY(i);
+                    double cx = getX(i + 1) - getX(i - 1), cy = getY(i + 1) - getY(i - 1);
+                    double product = Math.hypot(ax, ay) * Math.hypot(bx, by) * Math.hypot(cx, cy);
+                    curvature = product > 0 ? 2.0 * Math.abs(ax * by - ay * bx) / product : 0;
+                }
+                velocity[i] = curvature > 0 ? Math.min(max_velocity, Constants.PATH_TURNING_CONST / curvature) : max_velocity;
+            }
+
+            // the original's first velocity is its starting velocity
+            limitAcceleration(this, velocity, m_base.getVelocity(0), 0);
+            return velocity;
+        }
+
+        @Override
+        public int size() {
+            return m_base.size();
+        }
+
+        @Override
+        public double getX(int index) {
+            return m_base.getX(m_last - index);
+        }
+
+        @Override
+        public double getY(int index) {
+            return m_base.getY(m_last - index);
+        }
+
+        @Override
+        public double getVelocity(int index) {
+            return m_velocity[index];
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return VIEW_BYTES + 8L * m_velocity.length;
+        }
+    }
+
+    /**
+     * p' = A p + t with A orthonormal, so A's transpose undoes it.
+     */
+    private static class AffineView implements PathStorage {
+        private final PathStorage m_base;
+        private final double m_xx, m_xy, m_yx, m_yy;
+        private final double m_tx, m_ty;
+
+        AffineView(PathStorage base, double xx, double xy, double yx, double yy, double tx, double ty) {
+            m_base = base;
+            m_xx = xx;
+            m_xy = xy;
+            m_yx = yx;
+            m_yy = yy;
+            m_tx = tx;
+            m_ty = ty;
+        }
+
+        @Override
+        public int size() {
+            return m_base.size();
+        }
+
+        @Override
+        public double getX(int index) {
+            return m_xx * m_base.getX(index) + m_xy * m_base.getY(index) + m_tx;
+        }
+
+        @Override
+        public double getY(int index) {
+            return m_yx * m_base.getX(index) + m_yy * m_base.getY(index) + m_ty;
+        }
+
+        @Override
+        public double getVelocity(int index) {
+            return m_base.getVelocity(index);
+        }
+
+        @Override
+        public int closestIndex(double x, double y, int from, int to) {
+            double dx = x - m_tx;
+            double dy = y - m_ty;
+            return m_base.closestIndex(m_xx * dx + m_yx * dy, m_xy * dx + m_yy * dy, from, to);
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return VIEW_BYTES + 6 * 8;
+        }
+    }
+
+    private static class SliceView implements PathStorage {
+        private final PathStorage m_base;
+        private final int m_first;
+        private final int m_size;
+        private final double[] m_velocity;
+
+        /**
+         * A slice that stops short of the original's end slows to a stop at its own, and one
+         * that starts after the original's start speeds up from the starting velocity.
+         */
+        SliceView(PathStorage base, int first, int last) {
+            m_base = base;
+            m_first = first;
+            m_size = last - first + 1;
+            m_velocity = new double[m_size];
+            for(int i = 0; i < m_size; i++) m_velocity[i] = base.getVelocity(first + i);
+            double end_velocity = last == base.size() - 1 ? m_velocity[m_size - 1] : 0;
+            limitAcceleration(this, m_velocity, base.getVelocity(0), end_velocity);
+        }
+
+        @Override
+        public int size() {
+            return m_size;
+        }
+
+        @Override
+        public double getX(int index) {
+            return m_base.getX(m_first + index);
+        }
+
+        @Override
+        public double getY(int index) {
+            return m_base.getY(m_first + index);
+        }
+
+        @Override
+        public double getVelocity(int index) {
+            return m_velocity[index];
+        }
+
+        @Override
+        public int closestIndex(double x, double y, int from, int to) {
+            return m_base.closestIndex(x, y, m_first + from, m_first + to) - m_first;
+        }
+
+        @Override
+        public long getResidentBytes() {
+            return VIEW_BYTES + 8L * m_velocity.length;
+        }
+    }
+
+}
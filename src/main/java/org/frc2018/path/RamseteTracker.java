@@ -0,0 +1,121 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Ramsete tracking of the robot's projection onto the path. The reference is the point
+ * on the segment after the closest point that is nearest the robot, with the segment's
+ * heading and the path velocity and curvature there. The pose error in the robot frame
+ * is fed back with
+ *
+ * <pre>
+ * k = 2 zeta sqrt(w_ref^2 + b v_ref^2)
+ * v = v_ref cos(e_heading) + k e_along
+ * w = w_ref + k e_heading + b v_ref sinc(e_heading) e_lateral
+ * </pre>
+ *
+ * with {@link Constants#RAMSETE_B} and {@link Constants#RAMSETE_ZETA}. Below
+ * {@link PathTracker.Quality#FULL} the closest point search only looks
+ * {@link Constants#TRACKER_SMALL_WINDOW} points ahead.
+ */
+public class RamseteTracker implements PathTracker {
+
+    private final Path m_path;
+    private final VelocitySetpoint m_setpoint = new VelocitySetpoint();
+    private Quality m_quality = Quality.FULL;
+
+    public RamseteTracker(Path path) {
+        m_path = path;
+    }
+
+    @Override
+    public VelocitySetpoint update(Vector2 robot_pos, double robot_angle) {
+        PathStorage storage = m_path.getStorage();
+        int last = storage.size() - 1;
+        int closest = findClosestPointIndex(robot_pos);
+        // project onto the segment on the side of the closest point the robot is on
+        int segment = Math.min(closest, last - 1);
+        double ax = storage.getX(segment);
+        double ay = storage.getY(segment);
+        double dx = storage.getX(segment + 1) - ax;
+        double dy = storage.getY(segment + 1) - ay;
+        double length_squared = dx * dx + dy * dy;
+        double t = length_squared > 0 ? ((robot_pos.x - ax) * dx + (robot_pos.y - ay) * dy) / length_squared : 0;
+        if(t < 0 && segment > 0) {
+            segment--;
+            ax = storage.getX(segment);
+            ay = storage.getY(segment);
+            dx = storage.getX(segment + 1) - ax;
+            dy = storage.getY(segment + 1) - ay;
+            length_squared = dx * dx + dy * dy;
+            t = length_squared > 0 ? ((robot_pos.x - ax) * dx + (robot_pos.y - ay) * dy) / length_squared : 0;
+        }
+        t = Math.max(0, Math.min(1, t));
+
+        double reference_x = ax + t * dx;
+        double reference_y = ay + t * dy;
+        double reference_heading = Math.atan2(-dx, dy);
+        double reference_velocity = storage.getVelocity(segment) * (1 - t) + storage.getVelocity(segment + 1) * t;
+        double reference_turn = reference_velocity * curvatureAt(storage, t < 0.5 ? segment : segment + 1);
+
+        // drive backwards paths as a robot facing the other way, the turn rate is the same
+        boolean backwards = m_path.getBackwards();
+        if(backwards) robot_angle += Math.PI;
+
+        // pose error in the robot frame, forward is (-sin, cos) and left is (-cos, -sin)
+        double ex = reference_x - robot_pos.x;
+        double ey = reference_y - robot_pos.y;
+        double sin = Math.sin(robot_angle);
+        double cos = Math.cos(robot_angle);
+        double along_error = -sin * ex + cos * ey;
+        double lateral_error = -cos * ex - sin * ey;
+        double heading_error = Trajectory.wrapAngle(reference_heading - robot_angle);
+
+        double k = 2.0 * Constants.RAMSETE_ZETA
+            * Math.sqrt(reference_turn * reference_turn + Constants.RAMSETE_B * reference_velocity * reference_velocity);
+        double sinc = Math.abs(heading_error) < 1e-6 ? 1.0 : Math.sin(heading_error) / heading_error;
+        double velocity = reference_velocity * Math.cos(heading_error) + k * along_error;
+        double turn = reference_turn + k * heading_error
+            + Constants.RAMSETE_B * reference_velocity * sinc * lateral_error;
+
+        if(backwards) velocity = -velocity;
+        m_setpoint.left_velocity = velocity - turn * Constants.TRACK_WIDTH / 2.0;
+        m_setpoint.right_velocity = velocity + turn * Constants.TRACK_WIDTH / 2.0;
+        return m_setpoint;
+    }
+
+    /**
+     *
+     * @return signed curvature through a point and its neighbours, counter clockwise positive
+     */
+    private static double curvatureAt(PathStorage storage, int index) {
+        if(index <= 0 || index >= storage.size() - 1) return 0;
+        double ax = storage.getX(index) - storage.getX(index - 1);
+        double ay = storage.getY(index) - storage.getY(index - 1);
+        double bx = storage.getX(index + 1) - storage.getX(index);
+        double by = storage.getY(index + 1) - storage.getY(index);
+        double cx = bx + ax;
+        double cy = by + ay;
+        double product = Math.sqrt((ax * ax + ay * ay) * (bx * bx + by * by) * (cx * cx + cy * cy));
+        return product > 0 ? 2.0 * (ax * by - ay * bx) / product : 0;
+    }
+
+    @Override
+    public boolean doneWithPath(Vector2 robot_pos) {
+        if(m_quality == Quality.FULL) return m_path.doneWithPath(robot_pos);
+        return findClosestPointIndex(robot_pos) == m_path.getNumPoints() - 1;
+    }
+
+    @Override
+    public void setQuality(Quality quality) {
+        m_quality = quality;
+    }
+
+    private int findClosestPointIndex(Vector2 robot_pos) {
+        if(m_quality == Quality.FULL) return m_path.findClosestPointIndex(robot_pos);
+        return m_path.findClosestPointIndex(robot_pos, Constants.TRACKER_SMALL_WINDOW);
+    }
+
+}
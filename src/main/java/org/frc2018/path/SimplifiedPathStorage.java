@@ -0,0 +1,212 @@
+package org.frc2018.path;
+
+/**
+ * Stores only the points of a path that a Ramer-Douglas-Peucker reduction keeps, and
+ * rebuilds the others on demand by interpolating between the kept points.
+ *
+ * Indices still refer to the original dense points, so {@link Path} and the followers see
+ * the same number of points at the same spacing. A dropped point is rebuilt at the same
+ * fraction of the way between its kept neighbours as its index, which is where the path
+ * generator put it on a straight run. The reduction keeps a point whenever rebuilding it
+ * would move it more than the position tolerance or change its velocity by more than
+ * the velocity tolerance, so every rebuilt point is within both bounds of the original.
+ *
+ * The closest point search walks the kept segments instead of every dense point, since
+ * the closest rebuilt point on a segment is one of the two either side of the projection.
+ */
+public class SimplifiedPathStorage implements PathStorage {
+
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_velocity;
+    private final int[] m_index;
+    private final int m_size;
+
+    private final double m_max_deviation;
+    private final double m_max_velocity_error;
+
+    /**
+     *
+     * @param x dense x positions
+     * @param y dense y positions
+     * @param velocity dense target velocities
+     * @param tolerance largest distance in inches a rebuilt point may be from the original
+     * @param velocity_tolerance largest velocity change in in/s a rebuilt point may have
+     */
+    public SimplifiedPathStorage(double[] x, double[] y, double[] velocity, double tolerance, double velocity_tolerance) {
+        int n = x.length;
+        m_size = n;
+        boolean[] keep = new boolean[n];
+        if(n > 0) {
+            keep[0] = true;
+            keep[n - 1] = true;
+        }
+
+        // iterative so long straight paths can't overflow the stack
+        int[] stack = new int[2 * Math.max(n, 1)];
+        int top = 0;
+        if(n > 2) {
+            stack[top++] = 0;
+            stack[top++] = n - 1;
+        }
+        while(top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int worst = -1;
+            double worst_error = 1.0;
+            for(int i = first + 1; i < last; i++) {
+                double u = (double) (i - first) / (last - first);
+                double dx = x[first] + (x[last] - x[first]) * u - x[i];
+                double dy = y[first] + (y[last] - y[first]) * u - y[i];
+                double dv = velocity[first] + (velocity[last] - velocity[first]) * u - velocity[i];
+                double error = Math.max(Math.sqrt(dx * dx + dy * dy) / tolerance, Math.abs(dv) / velocity_tolerance);
+                if(error > worst_error) {
+                    worst_error = error;
+                    worst = i;
+                }
+            }
+            if(worst < 0) continue;
+            keep[worst] = true;
+            if(worst - first > 1) {
+                stack[top++] = first;
+                stack[top++] = worst;
+            }
+            if(last - worst > 1) {
+                stack[top++] = worst;
+                stack[top++] = last;
+            }
+        }
+
+        int count = 0;
+        for(boolean kept : keep) {
+            if(kept) count++;
+        }
+        m_x = new double[count];
+        m_y = new double[count];
+        m_velocity = new double[count];
+        m_index = new int[count];
+        for(int i = 0, k = 0; i < n; i++) {
+            if(!keep[i]) continue;
+            m_x[k] = x[i];
+            m_y[k] = y[i];
+            m_velocity[k] = velocity[i];
+            m_index[k] = i;
+            k++;
+        }
+
+        double max_deviation = 0;
+        double max_velocity_error = 0;
+        for(int i = 0; i < n; i++) {
+            max_deviation = Math.max(max_deviation, Math.hypot(getX(i) - x[i], getY(i) - y[i]));
+            max_velocity_error = Math.max(max_velocity_error, Math.abs(getVelocity(i) - velocity[i]));
+        }
+        m_max_deviation = max_deviation;
+        m_max_velocity_error = max_velocity_error;
+    }
+
+    /**
+     *
+     * @return kept point at or before a dense index, never the last kept point unless it is the only one
+     */
+    private int segmentOf(int index) {
+        int low = 0;
+        int high = m_index.length - 2;
+        if(high < 0) return 0;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(m_index[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private double interpolate(double[] values, int index) {
+        int k = segmentOf(index);
+        if(k + 1 >= values.length) return values[k];
+        double u = (double) (index - m_index[k]) / (m_index[k + 1] - m_index[k]);
+        return values[k] + (values[k + 1] - values[k]) * u;
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    public double getX(int index) {
+        return interpolate(m_x, index);
+    }
+
+    @Override
+    public double getY(int index) {
+        return interpolate(m_y, index);
+    }
+
+    @Override
+    public double getVelocity(int index) {
+        return interpolate(m_velocity, index);
+    }
+
+    @Override
+    public int closestIndex(double x, double y, int from, int to) {
+        int best = from;
+        double dx = getX(from) - x;
+        double dy = getY(from) - y;
+        double best_distance = dx * dx + dy * dy;
+        for(int k = segmentOf(from); k < m_index.length - 1 && m_index[k] <= to; k++) {
+            int low = Math.max(from, m_index[k]);
+            int high = Math.min(to, m_index[k + 1]);
+            // rebuilt points are evenly spaced on the segment, so distance is convex in the index
+            double sx = m_x[k + 1] - m_x[k];
+            double sy = m_y[k + 1] - m_y[k];
+            double length_squared = sx * sx + sy * sy;
+            double t = length_squared > 0 ? ((x - m_x[k]) * sx + (y - m_y[k]) * sy) / length_squared : 0;
+            int below = (int) Math.floor(m_index[k] + t * (m_index[k + 1] - m_index[k]));
+            int first = Math.max(low, Math.min(high, below));
+            int second = Math.max(low, Math.min(high, below + 1));
+            for(int i = first; i <= second; i++) {
+                dx = getX(i) - x;
+                dy = getY(i) - y;
+                double distance = dx * dx + dy * dy;
+                if(distance < best_distance) {
+                    best = i;
+                    best_distance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     *
+     * @return number of points actually stored
+     */
+    public int getStoredPoints() {
+        return m_index.length;
+    }
+
+    /**
+     *
+     * @return largest distance in inches between a rebuilt point and the original
+     */
+    public double getMaxDeviation() {
+        return m_max_deviation;
+    }
+
+    /**
+     *
+     * @return largest difference in in/s between a rebuilt velocity and the original
+     */
+    public double getMaxVelocityError() {
+        return m_max_velocity_error;
+    }
+
+    @Override
+    public long getResidentBytes() {
+        return (3L * 8 + 4) * m_index.length;
+    }
+
+}
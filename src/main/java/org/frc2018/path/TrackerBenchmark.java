@@ -0,0 +1,78 @@
+package org.frc2018.path;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.frc2018.path.FollowerRegression.Result;
+
+/**
+ * Drives the same corpus and starting poses as {@link FollowerRegression} with every
+ * {@link PathTracker.Type} and prints their tracking error and cost per tick side by side.
+ *
+ * Every tracker gets one untimed pass over the corpus first so all of them are compiled
+ * before anything is measured.
+ *
+ * Usage: TrackerBenchmark &lt;corpus directory&gt; [tracker ...]
+ */
+public class TrackerBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 1) {
+            System.err.println("usage: TrackerBenchmark <corpus directory> [tracker ...]");
+            System.exit(2);
+        }
+        List<PathTracker.Type> trackers = new ArrayList<>();
+        for(int i = 1; i < args.length; i++) {
+            trackers.add(PathTracker.Type.valueOf(args[i].toUpperCase()));
+        }
+        if(trackers.isEmpty()) {
+            for(PathTracker.Type tracker : PathTracker.Type.values()) trackers.add(tracker);
+        }
+        List<String> files = FollowerRegression.listCorpus(args[0]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        for(PathTracker.Type tracker : trackers) {
+            runAll(pool, files, tracker);
+        }
+
+        System.out.printf("%-22s %6s %9s %9s %9s %9s %8s%n", "tracker", "cases", "finished", "mean in", "max in",
+            "final in", "ns/tick");
+        for(PathTracker.Type tracker : trackers) {
+            List<Result> results = runAll(pool, files, tracker);
+            int finished = 0;
+            double mean_error = 0, max_error = 0, final_error = 0, total_ns = 0;
+            long ticks = 0;
+            for(Result result : results) {
+                if(result.finished) finished++;
+                mean_error += result.mean_error;
+                max_error = Math.max(max_error, result.max_error);
+                final_error += result.final_error;
+                total_ns += result.ns_per_tick * result.ticks;
+                ticks += result.ticks;
+            }
+            int n = Math.max(1, results.size());
+            System.out.printf("%-22s %6d %8.1f%% %9.2f %9.2f %9.2f %8.0f%n", tracker, results.size(),
+                100.0 * finished / n, mean_error / n, max_error, final_error / n, ticks > 0 ? total_ns / ticks : 0);
+        }
+        pool.shutdown();
+    }
+
+    private static List<Result> runAll(ExecutorService pool, List<String> files, PathTracker.Type tracker)
+            throws InterruptedException {
+        List<Result> results = new ArrayList<>();
+        for(Future<Result> future : FollowerRegression.submitAll(pool, files, tracker)) {
+            try {
+                results.add(future.get());
+            } catch(ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+import org.frc2018.math.Vector2;
+
+/**
+ * A path resampled by time instead of by distance. Sample k describes where the robot
+ * should be, which way it should face and how fast each side should turn at k * dt
+ * seconds after starting, so looking up a setpoint is a single array index.
+ *
+ * Headings use the same convention as the gyro and {@link org.frc2018.Position}:
+ * radians, zero along +y, counter-clockwise positive, unwrapped so consecutive
+ * samples never jump by a full turn.
+ */
+public class Trajectory {
+
+    private final double m_dt;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_heading;
+    private final double[] m_left_velocity;
+    private final double[] m_right_velocity;
+
+    private Trajectory(double dt, int length) {
+        m_dt = dt;
+        m_x = new double[length];
+        m_y = new double[length];
+        m_heading = new double[length];
+        m_left_velocity = new double[length];
+        m_right_velocity = new double[length];
+    }
+
+    /**
+     * Builds a trajectory sampled every {@link Constants#TRAJECTORY_DT} seconds.
+     *
+     * @param path path to time, its velocity column sets the speed along it
+     * @return the trajectory
+     */
+    public static Trajectory fromPath(Path path) {
+        return fromPath(path, Constants.TRAJECTORY_DT);
+    }
+
+    /**
+     * Times the path from its target velocities, then resamples position, heading and
+     * speed at a uniform dt. Wheel velocities come from the heading rate and
+     * {@link Constants#TRACK_WIDTH}. Backwards paths are driven facing the other way
+     * with negated speed.
+     *
+     * @param path path to time, its velocity column sets the speed along it
+     * @param dt seconds between samples
+     * @return the trajectory
+     */
+    public static Trajectory fromPath(Path path, double dt) {
+        int points = path.getNumPoints();
+        double[] times = new double[points];
+        double[] headings = new double[points];
+
+        for(int i = 0; i < points; i++) {
+            Vector2 from = path.getPoint(Math.max(0, Math.min(i, points - 2)));
+            Vector2 to = path.getPoint(Math.min(points - 1, Math.max(i + 1, 1)));
+            double heading = Math.atan2(-(to.x - from.x), to.y - from.y);
+            if(i > 0) {
+                Vector2 previous = path.getPoint(i - 1);
+                double distance = Vector2.distanceBetween(previous, path.getPoint(i));
+                double average_velocity = (Math.max(path.getVelocity(i - 1), Constants.TRAJECTORY_MIN_VELOCITY)
+                    + Math.max(path.getVelocity(i), Constants.TRAJECTORY_MIN_VELOCITY)) / 2.0;
+                times[i] = times[i - 1] + distance / average_velocity;
+                heading = headings[i - 1] + wrapAngle(heading - headings[i - 1]);
+            }
+            headings[i] = heading;
+        }
+
+        double direction = path.getBackwards() ? -1.0 : 1.0;
+        double facing_offset = path.getBackwards() ? Math.PI : 0.0;
+        int length = Math.max(1, (int) Math.ceil(times[points - 1] / dt) + 1);
+        Trajectory trajectory = new Trajectory(dt, length);
+        double[] speeds = new double[length];
+
+        int segment = 0;
+        for(int k = 0; k < length; k++) {
+            double t = Math.min(k * dt, times[points - 1]);
+            while(segment < points - 2 && times[segment + 1] < t) segment++;
+            int next = Math.min(segment + 1, points - 1);
+            double span = times[next] - times[segment];
+            double u = span > 0 ? (t - times[segment]) / span : 0.0;
+            Vector2 a = path.getPoint(segment);
+            Vector2 b = path.getPoint(next);
+            trajectory.m_x[k] = a.x + (b.x - a.x) * u;
+            trajectory.m_y[k] = a.y + (b.y - a.y) * u;
+            trajectory.m_heading[k] = headings[segment] + (headings[next] - headings[segment]) * u + facing_offset;
+            speeds[k] = direction * (path.getVelocity(segment) + (path.getVelocity(next) - path.getVelocity(segment)) * u);
+        }
+
+        for(int k = 0; k < length; k++) {
+            int before = Math.max(0, k - 1);
+            int after = Math.min(length - 1, k + 1);
+            double angular_velocity = after > before
+                ? (trajectory.m_heading[after] - trajectory.m_heading[before]) / ((after - before) * dt) : 0.0;
+            trajectory.m_left_velocity[k] = speeds[k] - angular_velocity * Constants.TRACK_WIDTH / 2.0;
+            trajectory.m_right_velocity[k] = speeds[k] + angular_velocity * Constants.TRACK_WIDTH / 2.0;
+        }
+        return trajectory;
+    }
+
+    /**
+     *
+     * @param angle radians
+     * @return the same angle in [-pi, pi)
+     */
+    public static double wrapAngle(double angle) {
+        angle = (angle + Math.PI) % (2.0 * Math.PI);
+        if(angle < 0) angle += 2.0 * Math.PI;
+        return angle - Math.PI;
+    }
+
+    /**
+     *
+     * @param elapsed seconds since the trajectory started
+     * @return sample index for that time, clamped to the last sample
+     */
+    public int indexAt(double elapsed) {
+        int index = (int) (elapsed / m_dt);
+        if(index < 0) return 0;
+        if(index >= m_x.length) return m_x.length - 1;
+        return index;
+    }
+
+    public int length() {
+        return m_x.length;
+    }
+
+    public double getDt() {
+        return m_dt;
+    }
+
+    /**
+     *
+     * @return seconds from the first sample to the last
+     */
+    public double getDuration() {
+        return (m_x.length - 1) * m_dt;
+    }
+
+    public double getX(int index) {
+        return m_x[index];
+    }
+
+    public double getY(int index) {
+        return m_y[index];
+    }
+
+    public double getHeading(int index) {
+        return m_heading[index];
+    }
+
+    public double getLeftVelocity(int index) {
+        return m_left_velocity[index];
+    }
+
+    public double getRightVelocity(int index) {
+        return m_right_velocity[index];
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.frc2018.path;
+
+import org.frc2018.Constants;
+import org.frc2018.math.Vector2;
+import org.frc2018.path.PathFollower.VelocitySetpoint;
+
+/**
+ * Follows a {@link Trajectory} by elapsed time. Each update indexes the sample for
+ * the current time and adds a small correction from the pose error, so the cost of
+ * a tick does not depend on how long the path is.
+ */
+public class TrajectoryFollower {
+
+    private Trajectory m_trajectory;
+    private VelocitySetpoint m_setpoint;
+
+    public TrajectoryFollower(Trajectory trajectory) {
+        m_trajectory = trajectory;
+        m_setpoint = new VelocitySetpoint();
+    }
+
+    /**
+     *
+     * @param elapsed seconds since the trajectory started
+     * @param robot_pos current robot position
+     * @param robot_angle current gyro heading in radians
+     * @return wheel velocities in inches per second, the returned object is reused between calls
+     */
+    public VelocitySetpoint update(double elapsed, Vector2 robot_pos, double robot_angle) {
+        int index = m_trajectory.indexAt(elapsed);
+        double left = m_trajectory.getLeftVelocity(index);
+        double right = m_trajectory.getRightVelocity(index);
+
+        // pose error in the robot frame, forward is (-sin, cos) and left is (-cos, -sin)
+        double dx = m_trajectory.getX(index) - robot_pos.x;
+        double dy = m_trajectory.getY(index) - robot_pos.y;
+        double sin = Math.sin(robot_angle);
+        double cos = Math.cos(robot_angle);
+        double along_error = -sin * dx + cos * dy;
+        double lateral_error = -cos * dx - sin * dy;
+        double heading_error = Trajectory.wrapAngle(m_trajectory.getHeading(index) - robot_angle);
+
+        // when reversing, steering toward a point on the left needs the opposite turn
+        double direction = left + right < 0 ? -1.0 : 1.0;
+        double speed_correction = Constants.TRAJECTORY_kALONG * along_error;
+        double turn_correction = Constants.TRAJECTORY_kHEADING * heading_error
+            + Constants.TRAJECTORY_kLATERAL * lateral_error * direction;
+
+        m_setpoint.left_velocity = left + speed_correction - turn_correction * Constants.TRACK_WIDTH / 2.0;
+        m_setpoint.right_velocity = right + speed_correction + turn_correction * Constants.TRACK_WIDTH / 2.0;
+        return m_setpoint;
+    }
+
+    /**
+     *
+     * @param elapsed seconds since the trajectory started
+     * @return true once the last sample has been reached
+     */
+    public boolean isFinished(double elapsed) {
+        return elapsed >= m_trajectory.getDuration();
+    }
+
+}
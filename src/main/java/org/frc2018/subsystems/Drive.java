@@ -1,18 +1,38 @@
 package org.frc2018.subsystems;
 
+import com.ctre.phoenix.motion.SetValueMotionProfile;
 import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.FollowerType;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
+import com.ctre.phoenix.motorcontrol.RemoteSensorSource;
+import com.ctre.phoenix.motorcontrol.SensorTerm;
+import com.ctre.phoenix.motorcontrol.StatusFrame;
 import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
 import com.ctre.phoenix.motorcontrol.can.TalonSRX;
 import com.ctre.phoenix.sensors.PigeonIMU;
+import com.ctre.phoenix.sensors.PigeonIMU_StatusFrame;
+
+import edu.wpi.first.wpilibj.Timer;
 
 import org.frc2018.Constants;
+import org.frc2018.PoseEstimator;
 import org.frc2018.Position;
+import org.frc2018.logging.LoopMonitor;
+import org.frc2018.logging.TickLogWriter;
 import org.frc2018.math.Vector2;
+import org.frc2018.path.OverloadAwareTracker;
 import org.frc2018.path.Path;
-import org.frc2018.path.PathFollower;
 import org.frc2018.path.PathFollower.VelocitySetpoint;
+import org.frc2018.path.PathTracker;
+import org.frc2018.path.Trajectory;
+import org.frc2018.path.TrajectoryFollower;
+import org.frc2018.telemetry.Counter;
+import org.frc2018.telemetry.Gauge;
+import org.frc2018.telemetry.MetricsRegistry;
+import org.frc2018.telemetry.StateChannel;
+import org.frc2018.telemetry.TelemetryServer;
 
 public class Drive implements Subsystem {
 
@@ -35,6 +55,9 @@ public class Drive implements Subsystem {
         DRIVE_STRAIGHT,
         VELOCITY_SETPOINT,
         FOLLOW_PATH,
+        FOLLOW_TRAJECTORY,
+        FOLLOW_PROFILE,
+        POSITION_SETPOINT,
     }
 
     /**
@@ -45,6 +68,7 @@ public class Drive implements Subsystem {
     protected static boolean usesVelocityControl(DriveMode mode) {
         switch(mode) {
             case FOLLOW_PATH:
+            case FOLLOW_TRAJECTORY:
             case VELOCITY_SETPOINT:
                 return true;
             default:
@@ -61,6 +85,8 @@ public class Drive implements Subsystem {
     protected static boolean usesPositionControl(DriveMode mode) {
         switch(mode) {
             case FOLLOW_PATH:
+            case FOLLOW_TRAJECTORY:
+            case FOLLOW_PROFILE:
             case VELOCITY_SETPOINT:
             case OPEN_LOOP:
                 return false;
@@ -74,13 +100,60 @@ public class Drive implements Subsystem {
     private TalonSRX m_right_master, m_right_slave;
 
     private PigeonIMU m_gyro;
+    // reused by every gyro read so a tick allocates nothing
+    private final double[] m_ypr = new double[3];
+    private final double[] m_xyz = new double[3];
 
     private DriveMode m_mode;
 
-    private PathFollower m_path_follower = null;
+    private PathTracker m_path_follower = null;
+    // m_path_follower when it is wrapped, for its counters
+    private OverloadAwareTracker m_overload_tracker = null;
     private Path m_path = null;
     private boolean m_done_with_path = false;
 
+    private TrajectoryFollower m_trajectory_follower = null;
+    private double m_trajectory_start_time = 0;
+
+    private MotionProfileFeeder m_profile_feeder;
+    private Trajectory m_profile = null;
+    private double m_profile_start_time = 0;
+
+    private TickLogWriter m_tick_log = new TickLogWriter(Constants.TICK_LOG_DIRECTORY, Constants.TICK_LOG_CAPACITY);
+    // pose estimator state written to the head of each tick log
+    private final double[] m_pose_state = new double[PoseEstimator.STATE_SIZE];
+    private LoopMonitor m_loop_monitor = LoopMonitor.getInstance();
+
+    private double m_left_setpoint = 0;
+    private double m_right_setpoint = 0;
+
+    // dashboard metrics, null until registerMetrics
+    private Gauge m_x_gauge, m_y_gauge, m_heading_gauge;
+    private Gauge m_left_velocity_gauge, m_right_velocity_gauge;
+    private Gauge m_left_error_gauge, m_right_error_gauge;
+    private Gauge m_mode_gauge, m_path_index_gauge, m_path_length_gauge;
+    private Counter m_mode_switch_counter, m_paths_completed_counter;
+    private Counter[] m_tracker_quality_counters;
+    private double m_last_angle = 0;
+    private double m_last_left_distance = 0;
+    private double m_last_right_distance = 0;
+    private final double[] m_state = new double[StateChannel.FIELDS];
+
+    private int m_selected_slot = -1;
+    private long m_last_mode_switch_ns = 0;
+    private long m_max_mode_switch_ns = 0;
+
+    // with output disabled setpoints are integrated into these instead of reaching the talons
+    private boolean m_output_enabled = true;
+    private double m_simulated_left_distance = 0;
+    private double m_simulated_right_distance = 0;
+    private double m_simulated_angle = 0;
+
+    // TURN_TO_HEADING and DRIVE_STRAIGHT targets, the talons close the loops
+    private boolean m_aux_sensors_selected = false;
+    private double m_distance_target = 0; // inches, average of both sides
+    private double m_heading_target = 0; // degrees, continuous like the pigeon's yaw
+
     private boolean mIsBrakeMode = false;
     private boolean mIsOnTarget = false;
     private boolean mIsApproaching = false;
@@ -93,12 +166,13 @@ public class Drive implements Subsystem {
         m_right_slave = new TalonSRX(Constants.RIGHT_SLAVE_PORT);
 
         m_left_master.setSensorPhase(false);
+        m_right_master.setSensorPhase(Constants.RIGHT_SENSOR_PHASE);
 
         m_left_slave.follow(m_left_master);
         m_right_slave.follow(m_right_master);
 
-        m_right_master.setInverted(true);
-        m_right_slave.setInverted(true);
+        m_right_master.setInverted(Constants.RIGHT_INVERTED);
+        m_right_slave.setInverted(Constants.RIGHT_INVERTED);
 
         m_left_master.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, 0, 0);
         m_right_master.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, 0, 0);
@@ -109,12 +183,16 @@ public class Drive implements Subsystem {
             Constants.TALON_UPDATE_PERIOD_MS, 0);
 
         m_gyro = new PigeonIMU(Constants.GYRO_PORT);
+        configureAuxiliarySensors();
+
+        m_profile_feeder = new MotionProfileFeeder(m_left_master, m_right_master);
 
         m_mode = DriveMode.OPEN_LOOP;
 
         mIsBrakeMode = true;
         setBrakeMode(false);
 
+        configureGainSlots();
         loadPositionGains();
         setOpenLoop(0, 0);
     }
@@ -123,8 +201,22 @@ public class Drive implements Subsystem {
     public void update() {
         //System.out.println("Angle: " + getGyroAngle());
         //System.out.printf("Left distance: %.3f, Right distance: %.3f\n", getLeftDistanceInches(), getRightDistanceInches());
-        Position.getInstance().update(getLeftDistanceInches(), getRightDistanceInches(), getGyroAngle());
-        System.out.println(Position.getInstance().toString());
+        double left_distance, right_distance, angle;
+        if(m_output_enabled) {
+            left_distance = getLeftDistanceInches();
+            right_distance = getRightDistanceInches();
+            angle = getGyroAngle();
+        } else {
+            updateSimulatedSensors();
+            left_distance = m_simulated_left_distance;
+            right_distance = m_simulated_right_distance;
+            angle = m_simulated_angle;
+        }
+        Position.getInstance().update(left_distance, right_distance, angle);
+        // System.out.println(Position.getInstance().toString());
+        m_last_angle = angle;
+        m_last_left_distance = left_distance;
+        m_last_right_distance = right_distance;
         switch(m_mode) {
             case OPEN_LOOP:
                 // System.out.println("");
@@ -136,14 +228,24 @@ public class Drive implements Subsystem {
                 return;
             case FOLLOW_PATH:
                 if(m_path_follower != null) {
-                    updatePathFollower(Position.getInstance().getPosition(), getGyroAngle());
+                    updatePathFollower(Position.getInstance().getPosition(), angle, left_distance, right_distance);
                 }
                 return;
-            case TURN_TO_HEADING:
-                // something here
+            case FOLLOW_TRAJECTORY:
+                if(m_trajectory_follower != null) {
+                    updateTrajectoryFollower(Position.getInstance().getPosition(), angle);
+                }
+                return;
+            case FOLLOW_PROFILE:
+                if(m_profile != null) {
+                    updateProfileFollower(Position.getInstance().getPosition(), angle);
+                }
                 return;
+            case TURN_TO_HEADING:
             case DRIVE_STRAIGHT:
-            
+                updateOnTarget(left_distance, right_distance, angle);
+                return;
+            case POSITION_SETPOINT:
                 return;
         };
     }
@@ -189,6 +291,8 @@ public class Drive implements Subsystem {
      */
     public void setOpenLoop(double left, double right) {
         if(m_mode != DriveMode.OPEN_LOOP) {
+            leaveProfileMode();
+            selectAuxiliarySensors(false);
             m_left_master.configNominalOutputForward(0.0, 0);
             m_left_master.configNominalOutputReverse(0.0, 0);
             m_right_master.configNominalOutputForward(0.0, 0);
@@ -218,10 +322,14 @@ public class Drive implements Subsystem {
      * 
      */
     private void configureTalonsForSpeedControl() {
+        long start = System.nanoTime();
+        leaveProfileMode();
+        selectAuxiliarySensors(false);
         if(!usesVelocityControl(m_mode)) {
             setBrakeMode(true);
-            loadVelocityGains();
         }
+        loadVelocityGains();
+        recordModeSwitch(start);
     }
 
     /**
@@ -234,6 +342,9 @@ public class Drive implements Subsystem {
             final double max_desired = Math.max(Math.abs(left_inches_per_sec), Math.abs(right_inches_per_sec));
             final double scale = max_desired > Constants.MAX_SETPOINT
                     ? Constants.MAX_SETPOINT / max_desired : 1.0;
+            m_left_setpoint = scale * left_inches_per_sec;
+            m_right_setpoint = scale * right_inches_per_sec;
+            if(!m_output_enabled) return;
             m_left_master.set(ControlMode.Velocity, scale * inchesPerSecondToEncoderTicksPer100Ms(left_inches_per_sec));
             m_right_master.set(ControlMode.Velocity, scale * inchesPerSecondToEncoderTicksPer100Ms(right_inches_per_sec));
         } else {
@@ -251,8 +362,9 @@ public class Drive implements Subsystem {
      * @param right_inches
      */
     public void setPositionSetpoint(double left_inches, double right_inches) {
-        m_mode = DriveMode.DRIVE_STRAIGHT;
         configureTalonsForPositionControl();
+        selectAuxiliarySensors(false);
+        m_mode = DriveMode.POSITION_SETPOINT;
         updatePositionSetpoint(left_inches, right_inches);
     }
 
@@ -260,10 +372,13 @@ public class Drive implements Subsystem {
      * 
      */
     private void configureTalonsForPositionControl() {
+        long start = System.nanoTime();
+        leaveProfileMode();
         if(!usesPositionControl(m_mode)) {
             setBrakeMode(true);
-            loadPositionGains();
         }
+        loadPositionGains();
+        recordModeSwitch(start);
     }
 
     /**
@@ -283,29 +398,280 @@ public class Drive implements Subsystem {
     }
 
 
+    // heading stuff
+
+    /**
+     * Turns in place to a heading, the shorter way round. The right master turns on its aux
+     * loop from the pigeon's yaw while holding the current distance, and the left follows it.
+     * 
+     * @param heading_degrees counter clockwise, same as {@link #getGyroAngle()}
+     */
+    public void setTurnToHeading(double heading_degrees) {
+        double yaw = getRawYaw();
+        double turn = wrapDegrees(heading_degrees - yaw);
+        double distance = (getLeftDistanceInches() + getRightDistanceInches()) / 2.0;
+        configureTalonsForAuxiliaryControl();
+        m_mode = DriveMode.TURN_TO_HEADING;
+        updateAuxiliarySetpoint(distance, yaw + turn);
+    }
+
+    /**
+     * Drives a distance holding the heading the robot has now.
+     * 
+     * @param inches negative to back up
+     */
+    public void setDriveStraight(double inches) {
+        double yaw = getRawYaw();
+        double distance = (getLeftDistanceInches() + getRightDistanceInches()) / 2.0;
+        configureTalonsForAuxiliaryControl();
+        m_mode = DriveMode.DRIVE_STRAIGHT;
+        updateAuxiliarySetpoint(distance + inches, yaw);
+    }
+
+    /**
+     * Drives a distance while turning to and holding a heading.
+     * 
+     * @param inches negative to back up
+     * @param heading_degrees counter clockwise, same as {@link #getGyroAngle()}
+     */
+    public void setDriveStraight(double inches, double heading_degrees) {
+        double yaw = getRawYaw();
+        double distance = (getLeftDistanceInches() + getRightDistanceInches()) / 2.0;
+        configureTalonsForAuxiliaryControl();
+        m_mode = DriveMode.DRIVE_STRAIGHT;
+        updateAuxiliarySetpoint(distance + inches, yaw + wrapDegrees(heading_degrees - yaw));
+    }
+
+    /**
+     * Points the remote sensors at the left encoder and the pigeon and sets up the sum and
+     * aux loop on the right master once at startup. Entering and leaving the aux modes then
+     * only swaps the primary sensor between the right encoder and the sum.
+     */
+    private void configureAuxiliarySensors() {
+        m_right_master.configRemoteFeedbackFilter(Constants.LEFT_MASTER_PORT, RemoteSensorSource.TalonSRX_SelectedSensor,
+            Constants.REMOTE_LEFT_ENCODER, 0);
+        m_right_master.configRemoteFeedbackFilter(Constants.GYRO_PORT, RemoteSensorSource.Pigeon_Yaw,
+            Constants.REMOTE_PIGEON, 0);
+        m_right_master.configSensorTerm(SensorTerm.Sum0, FeedbackDevice.RemoteSensor0, 0);
+        m_right_master.configSensorTerm(SensorTerm.Sum1, FeedbackDevice.QuadEncoder, 0);
+        m_right_master.configSelectedFeedbackSensor(FeedbackDevice.RemoteSensor1, Constants.PID_TURN, 0);
+        // pigeon units are 8192 per turn, this makes them tenths of a degree
+        m_right_master.configSelectedFeedbackCoefficient(3600.0 / Constants.PIGEON_UNITS_PER_ROTATION, Constants.PID_TURN, 0);
+        m_right_master.configAuxPIDPolarity(false, 0);
+        m_right_master.setStatusFramePeriod(StatusFrame.Status_12_Feedback1, Constants.TALON_UPDATE_PERIOD_MS, 0);
+        m_right_master.setStatusFramePeriod(StatusFrame.Status_14_Turn_PIDF1, Constants.TALON_UPDATE_PERIOD_MS, 0);
+        // the aux loop only sees a new yaw as often as the pigeon sends one
+        m_gyro.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_9_SixDeg_YPR, Constants.PIGEON_YPR_PERIOD_MS, 0);
+    }
+
+    /**
+     * 
+     * @param selected true to run the right master's primary loop on the average of both encoders
+     */
+    private void selectAuxiliarySensors(boolean selected) {
+        if(selected == m_aux_sensors_selected) return;
+        if(selected) {
+            m_right_master.configSelectedFeedbackSensor(FeedbackDevice.SensorSum, Constants.PID_PRIMARY, 0);
+            m_right_master.configSelectedFeedbackCoefficient(0.5, Constants.PID_PRIMARY, 0);
+        } else {
+            m_right_master.configSelectedFeedbackSensor(FeedbackDevice.QuadEncoder, Constants.PID_PRIMARY, 0);
+            m_right_master.configSelectedFeedbackCoefficient(1.0, Constants.PID_PRIMARY, 0);
+        }
+        m_aux_sensors_selected = selected;
+    }
+
+    private void configureTalonsForAuxiliaryControl() {
+        long start = System.nanoTime();
+        leaveProfileMode();
+        if(!usesPositionControl(m_mode)) {
+            setBrakeMode(true);
+        }
+        loadPositionGains();
+        selectAuxiliarySensors(true);
+        recordModeSwitch(start);
+    }
+
+    /**
+     * 
+     * @param distance_inches average of both sides to drive to
+     * @param heading_degrees continuous yaw to turn to
+     */
+    private void updateAuxiliarySetpoint(double distance_inches, double heading_degrees) {
+        m_distance_target = distance_inches;
+        m_heading_target = heading_degrees;
+        mIsOnTarget = false;
+        mIsApproaching = false;
+        if(!m_output_enabled) return;
+        m_right_master.set(ControlMode.MotionMagic, inchesToEncoderTicks(distance_inches),
+            DemandType.AuxPID, heading_degrees * 10.0);
+        m_left_master.follow(m_right_master, FollowerType.AuxOutput1);
+    }
+
+    /**
+     * Works out whether the talons have reached the target from this update's readings,
+     * so checking costs no extra CAN traffic.
+     */
+    private void updateOnTarget(double left_distance, double right_distance, double angle) {
+        double distance_error = Math.abs(m_distance_target - (left_distance + right_distance) / 2.0);
+        double heading_error = Math.abs(wrapDegrees(m_heading_target - angle));
+        mIsOnTarget = distance_error < Constants.DRIVE_STRAIGHT_TOLERANCE && heading_error < Constants.TURN_TOLERANCE;
+        mIsApproaching = distance_error < Constants.DRIVE_STRAIGHT_APPROACH && heading_error < Constants.TURN_APPROACH;
+    }
+
+    /**
+     * 
+     * @return angle in degrees wrapped to [-180, 180)
+     */
+    private static double wrapDegrees(double angle) {
+        return angle - 360.0 * Math.floor((angle + 180.0) / 360.0);
+    }
+
     // path following stuff
     public void setWantDrivePath(Path path) {
-        if(!usesVelocityControl(m_mode)) {
-            configureTalonsForSpeedControl();
-            m_mode = DriveMode.FOLLOW_PATH;
-        }
+        setWantDrivePath(path, Constants.PATH_TRACKER);
+    }
+
+    /**
+     * 
+     * @param path path to drive
+     * @param tracker how to steer along it
+     */
+    public void setWantDrivePath(Path path, PathTracker.Type tracker) {
+        configureTalonsForSpeedControl();
+        m_mode = DriveMode.FOLLOW_PATH;
         m_done_with_path = false;
         m_path = path;
-        m_path_follower = new PathFollower(m_path);;
+        m_path_follower = tracker.create(m_path);
+        m_overload_tracker = null;
+        if(Constants.TRACKER_OVERLOAD_ENABLED) {
+            m_overload_tracker = new OverloadAwareTracker(m_path_follower);
+            m_path_follower = m_overload_tracker;
+        }
+        if(Constants.TICK_LOG_ENABLED && m_output_enabled) {
+            Position.getInstance().getEstimator().getState(m_pose_state);
+            m_tick_log.start(m_path.getSource(), m_path.getBackwards(), tracker, m_pose_state);
+        }
     }
     
-    private void updatePathFollower(Vector2 robot_pos, double robot_angle) {
+    private void updatePathFollower(Vector2 robot_pos, double robot_angle, double left_distance, double right_distance) {
+        double timestamp = Timer.getFPGATimestamp();
         if(m_path_follower.doneWithPath(robot_pos)) {
+            m_tick_log.record(timestamp, left_distance, right_distance, robot_angle, robot_pos.x, robot_pos.y, 0, 0, true,
+                m_overload_tracker != null ? m_overload_tracker.getQuality() : PathTracker.Quality.FULL);
+            if(m_output_enabled) m_tick_log.stop();
             m_path_follower = null;
+            m_overload_tracker = null;
             m_path = null;
             m_done_with_path = true;
+            if(m_paths_completed_counter != null) m_paths_completed_counter.increment();
             return;
         }
+        double angle_degrees = robot_angle;
         robot_angle = Math.toRadians(robot_angle);
+        m_loop_monitor.startSection(LoopMonitor.Section.FOLLOWER);
         VelocitySetpoint setpoints = m_path_follower.update(robot_pos, robot_angle);
+        m_loop_monitor.endSection(LoopMonitor.Section.FOLLOWER);
+        if(m_overload_tracker != null && m_tracker_quality_counters != null) {
+            m_tracker_quality_counters[m_overload_tracker.getLastQuality().ordinal()].increment();
+        }
+        if(m_output_enabled) {
+            m_tick_log.record(timestamp, left_distance, right_distance, angle_degrees, robot_pos.x, robot_pos.y,
+                setpoints.left_velocity, setpoints.right_velocity, false,
+                m_overload_tracker != null ? m_overload_tracker.getLastQuality() : PathTracker.Quality.FULL);
+        }
+        updateVelocitySetpoint(setpoints.left_velocity, setpoints.right_velocity);
+    }
+
+    /**
+     * Follows a precomputed trajectory by elapsed time instead of pure pursuit.
+     * {@link #doneWithPath()} reports when it has finished.
+     *
+     * @param trajectory trajectory built with {@link Trajectory#fromPath}
+     */
+    public void setWantDriveTrajectory(Trajectory trajectory) {
+        configureTalonsForSpeedControl();
+        m_mode = DriveMode.FOLLOW_TRAJECTORY;
+        m_done_with_path = false;
+        m_trajectory_follower = new TrajectoryFollower(trajectory);
+        m_trajectory_start_time = Timer.getFPGATimestamp();
+    }
+
+    private void updateTrajectoryFollower(Vector2 robot_pos, double robot_angle) {
+        double elapsed = Timer.getFPGATimestamp() - m_trajectory_start_time;
+        if(m_trajectory_follower.isFinished(elapsed)) {
+            m_trajectory_follower = null;
+            m_done_with_path = true;
+            updateVelocitySetpoint(0, 0);
+            return;
+        }
+        VelocitySetpoint setpoints = m_trajectory_follower.update(elapsed, robot_pos, Math.toRadians(robot_angle));
         updateVelocitySetpoint(setpoints.left_velocity, setpoints.right_velocity);
     }
 
+    /**
+     * Streams a trajectory into the talon motion profile buffers so the talons time it
+     * on their own loop. The robot loop only feeds back a small pose correction.
+     * {@link #doneWithPath()} reports when the last point has been reached.
+     * 
+     * @param trajectory trajectory sampled every {@link Constants#PROFILE_DT_MS}
+     */
+    public void setWantDriveProfile(Trajectory trajectory) {
+        long start = System.nanoTime();
+        leaveProfileMode();
+        selectAuxiliarySensors(false);
+        setBrakeMode(true);
+        selectGainSlot(Constants.PROFILE_SLOT);
+        recordModeSwitch(start);
+        m_mode = DriveMode.FOLLOW_PROFILE;
+        m_done_with_path = false;
+        m_profile = trajectory;
+        m_profile_start_time = -1;
+        m_profile_feeder.start(trajectory, getLeftDistanceRaw(), getRightDistanceRaw());
+        SetValueMotionProfile set_value = m_profile_feeder.update();
+        m_left_master.set(ControlMode.MotionProfile, set_value.value);
+        m_right_master.set(ControlMode.MotionProfile, set_value.value);
+    }
+
+    private void updateProfileFollower(Vector2 robot_pos, double robot_angle) {
+        SetValueMotionProfile set_value = m_profile_feeder.update();
+        m_left_master.set(ControlMode.MotionProfile, set_value.value);
+        m_right_master.set(ControlMode.MotionProfile, set_value.value);
+        if(m_profile_feeder.isFinished()) {
+            m_done_with_path = true;
+            return;
+        }
+        if(set_value != SetValueMotionProfile.Enable) return;
+        if(m_profile_start_time < 0) m_profile_start_time = Timer.getFPGATimestamp();
+
+        // pose error against where the profile says we should be now, in the robot frame
+        int index = m_profile.indexAt(Timer.getFPGATimestamp() - m_profile_start_time);
+        robot_angle = Math.toRadians(robot_angle);
+        double dx = m_profile.getX(index) - robot_pos.x;
+        double dy = m_profile.getY(index) - robot_pos.y;
+        double sin = Math.sin(robot_angle);
+        double cos = Math.cos(robot_angle);
+        double along_error = -sin * dx + cos * dy;
+        double lateral_error = -cos * dx - sin * dy;
+        double heading_error = Trajectory.wrapAngle(m_profile.getHeading(index) - robot_angle);
+        double direction = m_profile.getLeftVelocity(index) + m_profile.getRightVelocity(index) < 0 ? -1.0 : 1.0;
+
+        double along = Constants.PROFILE_kALONG * along_error;
+        double turn = (Constants.PROFILE_kHEADING * heading_error + Constants.PROFILE_kLATERAL * lateral_error * direction)
+            * Constants.TRACK_WIDTH / 2.0;
+        m_profile_feeder.setCorrection(clampCorrection(along - turn), clampCorrection(along + turn));
+    }
+
+    private static double clampCorrection(double inches) {
+        return Math.max(-Constants.PROFILE_MAX_CORRECTION, Math.min(Constants.PROFILE_MAX_CORRECTION, inches));
+    }
+
+    private void leaveProfileMode() {
+        if(m_mode == DriveMode.FOLLOW_PROFILE) {
+            m_profile_feeder.stop();
+            m_profile = null;
+        }
+    }
+
     public boolean doneWithPath() {
         return m_done_with_path;
     }
@@ -317,7 +683,7 @@ public class Drive implements Subsystem {
      * @param ips
      * @return
      */
-    private static double inchesPerSecondToEncoderTicksPer100Ms(double ips) {
+    static double inchesPerSecondToEncoderTicksPer100Ms(double ips) {
         return inchesToEncoderTicks(ips) / 10.0;
     }
 
@@ -335,7 +701,7 @@ public class Drive implements Subsystem {
      * @param inches
      * @return
      */
-    private static int inchesToEncoderTicks(double inches) {
+    static int inchesToEncoderTicks(double inches) {
         return (int) ((Constants.ENCODERS_TICKS_PER_ROTATION / Constants.WHEEL_CIR) * inches);
     }
 
@@ -401,7 +767,9 @@ public class Drive implements Subsystem {
      * @return
      */
     public int getRightDistanceRaw() {
-        return m_right_master.getSelectedSensorPosition(0);
+        // straight from the encoder, the primary sensor is the sum in the aux modes and only
+        // shows a newly selected sensor a status frame after selecting it
+        return rightSensorSign() * m_right_master.getSensorCollection().getQuadraturePosition();
     }
 
     /**
@@ -417,7 +785,15 @@ public class Drive implements Subsystem {
      * @return velocity of right side of drivetrain in encoder ticks per 100 milli-seconds
      */
     public int getRightVelocityRaw() {
-        return m_right_master.getSelectedSensorVelocity(0);
+        return rightSensorSign() * m_right_master.getSensorCollection().getQuadratureVelocity();
+    }
+
+    /**
+     * The sensor collection reads the encoder before the motor inversion and the sensor
+     * phase are applied, the selected sensor after both.
+     */
+    private static int rightSensorSign() {
+        return Constants.RIGHT_INVERTED ^ Constants.RIGHT_SENSOR_PHASE ? -1 : 1;
     }
 
     /**
@@ -441,7 +817,7 @@ public class Drive implements Subsystem {
      * @param ticks right encoder distance to set in encoder ticks
      */
     public void setRightDistanceRaw(int ticks) {
-        m_right_master.setSelectedSensorPosition(-ticks, 0, 0);
+        m_right_master.getSensorCollection().setQuadraturePosition(rightSensorSign() * ticks, 0);
     }
 
     // gyro stuff
@@ -454,15 +830,22 @@ public class Drive implements Subsystem {
         
         //return m_gyro.getAbsoluteCompassHeading();
         
-        double[] ypr = new double[3];
-        m_gyro.getYawPitchRoll(ypr);
-        double angle = ypr[0];
+        double angle = getRawYaw();
         while(angle >= 360) angle -= 360;
         while(angle < 0) angle += 360;
         return angle;
         
     }
 
+    /**
+     * 
+     * @return pigeon yaw in degrees without wrapping, the value the talon's aux loop sees
+     */
+    private double getRawYaw() {
+        m_gyro.getYawPitchRoll(m_ypr);
+        return m_ypr[0];
+    }
+
     /**
      * 
      * @param angle angle in degrees to be sent to talon register
@@ -481,58 +864,156 @@ public class Drive implements Subsystem {
         return mIsApproaching;
     }
 
+    /**
+     * 
+     * @return gyro angle in degrees that the last update used, without another CAN read
+     */
+    public double getLastAngle() {
+        return m_last_angle;
+    }
+
     /**
      * 
      * @return robot angular velocity in degrees per second
      */
     public double getGyroAngularVelocity() {
-        double[] xyz = new double[3];
-        m_gyro.getRawGyro(xyz);
-        return xyz[1];
+        m_gyro.getRawGyro(m_xyz);
+        return m_xyz[1];
     }
 
     // pid stuff
 
     
 
+    /**
+     * Writes every gain set into its own profile slot on both masters. Called once at
+     * startup so that changing modes later only needs a slot select.
+     */
+    private void configureGainSlots() {
+        configureGainSlots(m_left_master);
+        configureGainSlots(m_right_master);
+
+        // heading gains, only the right master runs the aux loop, in tenths of a degree
+        m_right_master.config_kP(Constants.TURN_SLOT, Constants.TURN_kP, 0);
+        m_right_master.config_kI(Constants.TURN_SLOT, Constants.TURN_kI, 0);
+        m_right_master.config_kD(Constants.TURN_SLOT, Constants.TURN_kD, 0);
+        m_right_master.config_kF(Constants.TURN_SLOT, Constants.TURN_kF, 0);
+        m_right_master.config_IntegralZone(Constants.TURN_SLOT, Constants.TURN_IZONE, 0);
+        m_right_master.selectProfileSlot(Constants.TURN_SLOT, Constants.PID_TURN);
+    }
+
+    private static void configureGainSlots(TalonSRX talon) {
+        // velocity gains
+        talon.config_kP(Constants.VELOCITY_SLOT, Constants.VEL_kP, 0);
+        talon.config_kI(Constants.VELOCITY_SLOT, Constants.VEL_kI, 0);
+        talon.config_kD(Constants.VELOCITY_SLOT, Constants.VEL_kD, 0);
+        talon.config_kF(Constants.VELOCITY_SLOT, Constants.VEL_kF, 0);
+        talon.config_IntegralZone(Constants.VELOCITY_SLOT, Constants.VEL_IZONE, 0);
+
+        // position gains
+        talon.config_kP(Constants.POSITION_SLOT, Constants.POS_kP, 0);
+        talon.config_kI(Constants.POSITION_SLOT, Constants.POS_kI, 0);
+        talon.config_kD(Constants.POSITION_SLOT, Constants.POS_kD, 0);
+        talon.config_kF(Constants.POSITION_SLOT, Constants.POS_kF, 0);
+        talon.config_IntegralZone(Constants.POSITION_SLOT, Constants.POS_IZONE, 0);
+
+        // motion profile gains
+        talon.config_kP(Constants.PROFILE_SLOT, Constants.PROFILE_kP, 0);
+        talon.config_kI(Constants.PROFILE_SLOT, Constants.PROFILE_kI, 0);
+        talon.config_kD(Constants.PROFILE_SLOT, Constants.PROFILE_kD, 0);
+        talon.config_kF(Constants.PROFILE_SLOT, Constants.PROFILE_kF, 0);
+
+        // shared by every slot
+        talon.configClosedloopRamp(Constants.CLOSED_LOOP_RAMP, 0);
+        talon.configMotionAcceleration(Constants.POS_MAX_ACCEL, 0);
+        talon.configMotionCruiseVelocity(Constants.POS_MAX_VELO, 0);
+    }
+
     /**
      * 
+     * @param slot profile slot to run the primary closed loop from
      */
-    public void loadPositionGains() {
-        // left position gains
-        m_left_master.config_kP(0, Constants.POS_kP, 0);
-        m_left_master.config_kI(0, Constants.POS_kI, 0);
-        m_left_master.config_kD(0, Constants.POS_kD, 0);
-        m_left_master.config_kF(0, Constants.POS_kF, 0);
-        m_left_master.configClosedloopRamp(Constants.CLOSED_LOOP_RAMP, 0);
-        m_left_master.configMotionAcceleration(Constants.POS_MAX_ACCEL, 0);
-        m_left_master.configMotionCruiseVelocity(Constants.POS_MAX_VELO, 0);
-
-        // right position gains
-        m_right_master.config_kP(0, Constants.POS_kP, 0);
-        m_right_master.config_kI(0, Constants.POS_kI, 0);
-        m_right_master.config_kD(0, Constants.POS_kD, 0);
-        m_right_master.config_kF(0, Constants.POS_kF, 0);
-        m_right_master.configClosedloopRamp(Constants.CLOSED_LOOP_RAMP, 0);
-        m_right_master.configMotionAcceleration(Constants.POS_MAX_ACCEL, 0);
-        m_right_master.configMotionCruiseVelocity(Constants.POS_MAX_VELO, 0);
+    private void selectGainSlot(int slot) {
+        if(slot == m_selected_slot) return;
+        m_left_master.selectProfileSlot(slot, Constants.PID_PRIMARY);
+        m_right_master.selectProfileSlot(slot, Constants.PID_PRIMARY);
+        m_selected_slot = slot;
+    }
 
+    /**
+     * Switches both masters to the position gains.
+     */
+    public void loadPositionGains() {
+        selectGainSlot(Constants.POSITION_SLOT);
     }
 
+    /**
+     * Switches both masters to the velocity gains.
+     */
     public void loadVelocityGains() {
-                // left velocity gains
-            m_left_master.config_kP(0, Constants.VEL_kP, 0);
-            m_left_master.config_kI(0, Constants.VEL_kI, 0);
-            m_left_master.config_kD(0, Constants.VEL_kD, 0);
-            m_left_master.config_kF(0, Constants.VEL_kF, 0);
-        
-                // right velocity gains
-            m_right_master.config_kP(0, Constants.VEL_kP, 0);
-            m_right_master.config_kI(0, Constants.VEL_kI, 0);
-            m_right_master.config_kD(0, Constants.VEL_kD, 0);
-            m_right_master.config_kF(0, Constants.VEL_kF, 0);
+        selectGainSlot(Constants.VELOCITY_SLOT);
+    }
+
+    private void recordModeSwitch(long start_ns) {
+        m_last_mode_switch_ns = System.nanoTime() - start_ns;
+        m_max_mode_switch_ns = Math.max(m_max_mode_switch_ns, m_last_mode_switch_ns);
+        if(m_mode_switch_counter != null) m_mode_switch_counter.increment();
+        if(m_last_mode_switch_ns > Constants.MODE_SWITCH_BUDGET_US * 1000L) {
+            System.out.println("Drive mode switch took " + m_last_mode_switch_ns / 1000 + " us");
+        }
+    }
+
+    /**
+     * 
+     * @return time spent reconfiguring the talons on the most recent closed loop mode change, in microseconds
+     */
+    public double getLastModeSwitchMicros() {
+        return m_last_mode_switch_ns / 1000.0;
+    }
+
+    /**
+     * 
+     * @return longest mode change seen since startup, in microseconds
+     */
+    public double getMaxModeSwitchMicros() {
+        return m_max_mode_switch_ns / 1000.0;
     }
     
+    // simulated output stuff
+
+    /**
+     * With output disabled the talons never receive a setpoint. The velocity setpoints are instead
+     * integrated into simulated encoder and gyro readings, so the path following code can be run
+     * on a stationary robot, see {@link org.frc2018.auto.JitWarmup}.
+     *
+     * @param enabled false to stub out motor output and sensors
+     */
+    public void setOutputEnabled(boolean enabled) {
+        if(enabled == m_output_enabled) return;
+        m_output_enabled = enabled;
+        m_simulated_left_distance = 0;
+        m_simulated_right_distance = 0;
+        m_simulated_angle = 0;
+        m_left_setpoint = 0;
+        m_right_setpoint = 0;
+    }
+
+    public boolean isOutputEnabled() {
+        return m_output_enabled;
+    }
+
+    private void updateSimulatedSensors() {
+        double dt = Constants.LOOP_PERIOD;
+        double left_delta = m_left_setpoint * dt;
+        double right_delta = m_right_setpoint * dt;
+        m_simulated_left_distance += left_delta;
+        m_simulated_right_distance += right_delta;
+        // counter clockwise positive, same as the gyro
+        m_simulated_angle += Math.toDegrees((right_delta - left_delta) / Constants.TRACK_WIDTH);
+        while(m_simulated_angle >= 360) m_simulated_angle -= 360;
+        while(m_simulated_angle < 0) m_simulated_angle += 360;
+    }
+
     // abstracted stuff
 
     @Override
@@ -551,12 +1032,101 @@ public class Drive implements Subsystem {
         setRightDistanceInches(0);
         m_gyro.setYaw(0.0, 0);
         m_gyro.setYawToCompass(0);
+        m_simulated_left_distance = 0;
+        m_simulated_right_distance = 0;
+        m_simulated_angle = 0;
         Position.getInstance().reset();
     }
 
+    /**
+     * Queues the latest pose, path progress and setpoints for any connected telemetry clients.
+     */
+    public void publishTelemetry() {
+        double angle = m_last_angle;
+        TelemetryServer telemetry = TelemetryServer.getInstance();
+        if(telemetry.getClientCount() == 0) return;
+        Position position = Position.getInstance();
+        Path path = m_path;
+        telemetry.publish(Timer.getFPGATimestamp(), position.getX(), position.getY(), angle,
+            path != null ? path.getCurrentIndex() : 0, path != null ? path.getNumPoints() : 0,
+            m_left_setpoint, m_right_setpoint, getLeftVelocityInchesPerSecond(), getRightVelocityInchesPerSecond(),
+            m_mode.ordinal());
+    }
+
+    /**
+     * Writes this tick's pose, sensors and follower output to the {@link StateChannel}, reusing
+     * what update already read.
+     */
+    public void publishState() {
+        Position position = Position.getInstance();
+        Path path = m_path;
+        double[] state = m_state;
+        state[StateChannel.TIMESTAMP] = Timer.getFPGATimestamp();
+        state[StateChannel.X] = position.getX();
+        state[StateChannel.Y] = position.getY();
+        state[StateChannel.HEADING] = m_last_angle;
+        state[StateChannel.LEFT_DISTANCE] = m_last_left_distance;
+        state[StateChannel.RIGHT_DISTANCE] = m_last_right_distance;
+        state[StateChannel.LEFT_VELOCITY] = m_output_enabled ? getLeftVelocityInchesPerSecond() : m_left_setpoint;
+        state[StateChannel.RIGHT_VELOCITY] = m_output_enabled ? getRightVelocityInchesPerSecond() : m_right_setpoint;
+        state[StateChannel.LEFT_SETPOINT] = m_left_setpoint;
+        state[StateChannel.RIGHT_SETPOINT] = m_right_setpoint;
+        state[StateChannel.PATH_INDEX] = path != null ? path.getCurrentIndex() : 0;
+        state[StateChannel.PATH_LENGTH] = path != null ? path.getNumPoints() : 0;
+        state[StateChannel.MODE] = m_mode.ordinal();
+        StateChannel.getInstance().publish(state);
+    }
+
+    @Override
+    public void registerMetrics(MetricsRegistry registry) {
+        m_x_gauge = registry.gauge("drive/x", Constants.DASHBOARD_POSITION_DEADBAND);
+        m_y_gauge = registry.gauge("drive/y", Constants.DASHBOARD_POSITION_DEADBAND);
+        m_heading_gauge = registry.gauge("drive/heading", Constants.DASHBOARD_HEADING_DEADBAND);
+        m_left_velocity_gauge = registry.gauge("drive/left_velocity", Constants.DASHBOARD_VELOCITY_DEADBAND);
+        m_right_velocity_gauge = registry.gauge("drive/right_velocity", Constants.DASHBOARD_VELOCITY_DEADBAND);
+        m_left_error_gauge = registry.gauge("drive/left_error", Constants.DASHBOARD_VELOCITY_DEADBAND);
+        m_right_error_gauge = registry.gauge("drive/right_error", Constants.DASHBOARD_VELOCITY_DEADBAND);
+        m_mode_gauge = registry.gauge("drive/mode", 0);
+        m_path_index_gauge = registry.gauge("drive/path_index", 0);
+        m_path_length_gauge = registry.gauge("drive/path_length", 0);
+        m_mode_switch_counter = registry.counter("drive/mode_switches");
+        m_paths_completed_counter = registry.counter("drive/paths_completed");
+        // path follower ticks at each quality, only counted while it is overload aware
+        PathTracker.Quality[] qualities = PathTracker.Quality.values();
+        Counter[] quality_counters = new Counter[qualities.length];
+        for(PathTracker.Quality quality : qualities) {
+            quality_counters[quality.ordinal()] = registry.counter("drive/tracker_" + quality.name().toLowerCase());
+        }
+        m_tracker_quality_counters = quality_counters;
+    }
+
+    /**
+     * Closed loop error is in inches per second in the velocity modes and inches in the position modes.
+     */
     @Override
     public void outputToSmartDashboard() {
-        // TODO: something here
+        if(m_x_gauge == null) return;
+        Position position = Position.getInstance();
+        m_x_gauge.set(position.getX());
+        m_y_gauge.set(position.getY());
+        m_heading_gauge.set(m_last_angle);
+        m_mode_gauge.set(m_mode.ordinal());
+        Path path = m_path;
+        m_path_index_gauge.set(path != null ? path.getCurrentIndex() : 0);
+        m_path_length_gauge.set(path != null ? path.getNumPoints() : 0);
+        if(!m_output_enabled) return;
+        m_left_velocity_gauge.set(getLeftVelocityInchesPerSecond());
+        m_right_velocity_gauge.set(getRightVelocityInchesPerSecond());
+        if(usesVelocityControl(m_mode)) {
+            m_left_error_gauge.set(encoderTicksPer100MsToInchesPerSecond(m_left_master.getClosedLoopError(0)));
+            m_right_error_gauge.set(encoderTicksPer100MsToInchesPerSecond(m_right_master.getClosedLoopError(0)));
+        } else if(usesPositionControl(m_mode)) {
+            m_left_error_gauge.set(encoderTicksToInches(m_left_master.getClosedLoopError(0)));
+            m_right_error_gauge.set(encoderTicksToInches(m_right_master.getClosedLoopError(0)));
+        } else {
+            m_left_error_gauge.set(0);
+            m_right_error_gauge.set(0);
+        }
     }
 
 
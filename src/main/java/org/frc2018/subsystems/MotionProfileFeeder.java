@@ -0,0 +1,223 @@
+package org.frc2018.subsystems;
+
+import com.ctre.phoenix.motion.MotionProfileStatus;
+import com.ctre.phoenix.motion.SetValueMotionProfile;
+import com.ctre.phoenix.motion.TrajectoryPoint;
+import com.ctre.phoenix.motion.TrajectoryPoint.TrajectoryDuration;
+import com.ctre.phoenix.motorcontrol.can.TalonSRX;
+
+import edu.wpi.first.wpilibj.Notifier;
+
+import org.frc2018.Constants;
+import org.frc2018.path.Trajectory;
+
+/**
+ * Streams a {@link Trajectory} into the motion profile buffers of both drive masters.
+ *
+ * A notifier running at half the point duration moves points from the top level
+ * buffer into the talons and tops the buffers up in batches, so the talons execute
+ * the profile on their own 1 ms loop regardless of robot loop jitter. Only
+ * {@link Constants#PROFILE_MAX_LEAD_POINTS} points are kept buffered ahead of the one
+ * executing. The robot loop only decides when to enable and hold the profile and may
+ * set a small position correction that is added to every point not yet streamed, so
+ * a correction reaches the talons within that lead.
+ */
+public class MotionProfileFeeder {
+
+    private final TalonSRX m_left;
+    private final TalonSRX m_right;
+    private final Notifier m_notifier;
+
+    private final TrajectoryPoint m_point = new TrajectoryPoint();
+    private final MotionProfileStatus m_left_status = new MotionProfileStatus();
+    private final MotionProfileStatus m_right_status = new MotionProfileStatus();
+    // separate from the robot loop's, the feeder reads them under m_feed_lock
+    private final MotionProfileStatus m_left_feed_status = new MotionProfileStatus();
+    private final MotionProfileStatus m_right_feed_status = new MotionProfileStatus();
+
+    // streaming state, guarded by m_feed_lock so the robot loop never waits on a batch push
+    private final Object m_feed_lock = new Object();
+    private Trajectory m_feed_trajectory = null;
+    private double[] m_left_position = new double[0];
+    private double[] m_right_position = new double[0];
+    private int m_left_start_ticks = 0;
+    private int m_right_start_ticks = 0;
+    private int m_next_point = 0;
+
+    private volatile double m_left_correction = 0;
+    private volatile double m_right_correction = 0;
+
+    // enable state, guarded by this
+    private Trajectory m_trajectory = null;
+    private SetValueMotionProfile m_set_value = SetValueMotionProfile.Disable;
+    private boolean m_running = false;
+    private boolean m_finished = false;
+
+    public MotionProfileFeeder(TalonSRX left, TalonSRX right) {
+        m_left = left;
+        m_right = right;
+        m_notifier = new Notifier(this::feed);
+    }
+
+    /**
+     * Clears both talons and starts streaming. The profile is enabled by {@link #update}
+     * once enough points have been buffered.
+     *
+     * @param trajectory trajectory sampled at {@link Constants#PROFILE_DT_MS}
+     * @param left_start_ticks current left encoder position, the profile is relative to it
+     * @param right_start_ticks current right encoder position, the profile is relative to it
+     */
+    public synchronized void start(Trajectory trajectory, int left_start_ticks, int right_start_ticks) {
+        // integrate wheel velocities into wheel positions with the trapezoid rule
+        int length = trajectory.length();
+        double[] left_position = new double[length];
+        double[] right_position = new double[length];
+        double dt = trajectory.getDt();
+        for(int i = 1; i < length; i++) {
+            left_position[i] = left_position[i - 1]
+                + (trajectory.getLeftVelocity(i - 1) + trajectory.getLeftVelocity(i)) / 2.0 * dt;
+            right_position[i] = right_position[i - 1]
+                + (trajectory.getRightVelocity(i - 1) + trajectory.getRightVelocity(i)) / 2.0 * dt;
+        }
+
+        m_left_correction = 0;
+        m_right_correction = 0;
+        synchronized(m_feed_lock) {
+            m_feed_trajectory = trajectory;
+            m_left_position = left_position;
+            m_right_position = right_position;
+            m_left_start_ticks = left_start_ticks;
+            m_right_start_ticks = right_start_ticks;
+            m_next_point = 0;
+            m_left.clearMotionProfileTrajectories();
+            m_right.clearMotionProfileTrajectories();
+        }
+        m_trajectory = trajectory;
+        m_left.clearMotionProfileHasUnderrun(0);
+        m_right.clearMotionProfileHasUnderrun(0);
+        m_left.configMotionProfileTrajectoryPeriod(0, 0);
+        m_right.configMotionProfileTrajectoryPeriod(0, 0);
+        m_left.changeMotionControlFramePeriod(Constants.PROFILE_DT_MS / 2);
+        m_right.changeMotionControlFramePeriod(Constants.PROFILE_DT_MS / 2);
+
+        m_set_value = SetValueMotionProfile.Disable;
+        m_finished = false;
+        if(!m_running) {
+            m_notifier.startPeriodic(Constants.PROFILE_DT_MS / 2 / 1000.0);
+            m_running = true;
+        }
+    }
+
+    /**
+     * Stops streaming and clears both buffers. The talons should be put in another mode afterwards.
+     */
+    public synchronized void stop() {
+        if(m_running) {
+            m_notifier.stop();
+            m_running = false;
+        }
+        synchronized(m_feed_lock) {
+            m_feed_trajectory = null;
+            m_left.clearMotionProfileTrajectories();
+            m_right.clearMotionProfileTrajectories();
+        }
+        m_trajectory = null;
+        m_set_value = SetValueMotionProfile.Disable;
+    }
+
+    /**
+     * Sets an offset in inches added to the position of every point streamed from now on.
+     */
+    public void setCorrection(double left_inches, double right_inches) {
+        m_left_correction = left_inches;
+        m_right_correction = right_inches;
+    }
+
+    /**
+     * Reads the profile status from both talons and advances the enable state.
+     * Called once per robot loop.
+     *
+     * @return the value to send with {@code ControlMode.MotionProfile}
+     */
+    public synchronized SetValueMotionProfile update() {
+        if(m_trajectory == null) return m_set_value;
+        m_left.getMotionProfileStatus(m_left_status);
+        m_right.getMotionProfileStatus(m_right_status);
+
+        switch(m_set_value) {
+            case Disable:
+                if(m_left_status.btmBufferCnt >= Constants.PROFILE_MIN_BUFFERED_POINTS
+                        && m_right_status.btmBufferCnt >= Constants.PROFILE_MIN_BUFFERED_POINTS) {
+                    m_set_value = SetValueMotionProfile.Enable;
+                }
+                break;
+            case Enable:
+                if(m_left_status.activePointValid && m_left_status.isLast
+                        && m_right_status.activePointValid && m_right_status.isLast) {
+                    // hold the final point until the mode changes
+                    m_set_value = SetValueMotionProfile.Hold;
+                    m_finished = true;
+                }
+                break;
+            default:
+                break;
+        }
+        return m_set_value;
+    }
+
+    public synchronized boolean isFinished() {
+        return m_finished;
+    }
+
+    /**
+     *
+     * @return true if either talon ran out of points while executing
+     */
+    public boolean hasUnderrun() {
+        return m_left_status.hasUnderrun || m_right_status.hasUnderrun;
+    }
+
+    private void feed() {
+        synchronized(m_feed_lock) {
+            m_left.processMotionProfileBuffer();
+            m_right.processMotionProfileBuffer();
+            Trajectory trajectory = m_feed_trajectory;
+            if(trajectory == null) return;
+
+            // points buffered in either talon that haven't executed yet
+            m_left.getMotionProfileStatus(m_left_feed_status);
+            m_right.getMotionProfileStatus(m_right_feed_status);
+            int lead = Math.max(m_left_feed_status.topBufferCnt + m_left_feed_status.btmBufferCnt,
+                m_right_feed_status.topBufferCnt + m_right_feed_status.btmBufferCnt);
+
+            int pushed = 0;
+            int length = trajectory.length();
+            while(m_next_point < length && pushed < Constants.PROFILE_BATCH_POINTS
+                    && lead + pushed < Constants.PROFILE_MAX_LEAD_POINTS
+                    && !m_left.isMotionProfileTopLevelBufferFull() && !m_right.isMotionProfileTopLevelBufferFull()) {
+                int i = m_next_point;
+                boolean last = i == length - 1;
+                pushPoint(m_left, m_left_start_ticks, m_left_position[i] + m_left_correction,
+                    trajectory.getLeftVelocity(i), last);
+                pushPoint(m_right, m_right_start_ticks, m_right_position[i] + m_right_correction,
+                    trajectory.getRightVelocity(i), last);
+                m_next_point++;
+                pushed++;
+            }
+        }
+    }
+
+    private void pushPoint(TalonSRX talon, int start_ticks, double position_inches, double velocity_inches_per_sec,
+            boolean last) {
+        m_point.position = start_ticks + Drive.inchesToEncoderTicks(position_inches);
+        m_point.velocity = Drive.inchesPerSecondToEncoderTicksPer100Ms(velocity_inches_per_sec);
+        m_point.headingDeg = 0;
+        m_point.profileSlotSelect0 = Constants.PROFILE_SLOT;
+        m_point.profileSlotSelect1 = 0;
+        m_point.timeDur = TrajectoryDuration.Trajectory_Duration_0ms.valueOf(Constants.PROFILE_DT_MS);
+        m_point.zeroPos = false;
+        m_point.isLastPoint = last;
+        talon.pushMotionProfileTrajectory(m_point);
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.frc2018.subsystems;
 
+import org.frc2018.telemetry.MetricsRegistry;
+
 public interface Subsystem {
 
     /**
@@ -8,7 +10,12 @@ public interface Subsystem {
     public void update();
 
     /**
-     * outputs and recieves data from smart dashboard
+     * creates the gauges and counters this subsystem updates, called once at startup
+     */
+    public void registerMetrics(MetricsRegistry registry);
+
+    /**
+     * updates this subsystem's gauges, they are sent to the dashboard by a background thread
      */
     public void outputToSmartDashboard();
 
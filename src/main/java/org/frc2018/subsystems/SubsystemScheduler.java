@@ -0,0 +1,163 @@
+package org.frc2018.subsystems;
+
+/**
+ * Runs periodic work at its own rate off a single robot loop tick.
+ *
+ * Each task has a rate, which is rounded to a whole number of ticks, a priority and a
+ * time budget. A task becomes due once per period and runs exactly once while it is due.
+ * Tasks run in priority order. Once the tick has used up the tick budget, tasks that are
+ * not {@link Priority#CRITICAL} are shed. They stay due and run on a later tick of the same
+ * period. A task still due when its next period starts counts as missed and is not run twice
+ * to catch up. Tasks of the same rate are spread over different ticks.
+ *
+ * {@link #tick()} does not allocate.
+ */
+public class SubsystemScheduler {
+
+    public enum Priority {
+        CRITICAL,
+        NORMAL,
+        LOW,
+    }
+
+    private static class Task {
+        final String name;
+        final Runnable runnable;
+        final int period_ticks;
+        final int phase;
+        final Priority priority;
+        final long budget_ns;
+
+        boolean due = false;
+        long runs = 0;
+        long missed = 0;
+        long shed = 0;
+        long over_budget = 0;
+        long total_ns = 0;
+        long max_ns = 0;
+
+        Task(String name, Runnable runnable, int period_ticks, int phase, Priority priority, long budget_ns) {
+            this.name = name;
+            this.runnable = runnable;
+            this.period_ticks = period_ticks;
+            this.phase = phase;
+            this.priority = priority;
+            this.budget_ns = budget_ns;
+        }
+    }
+
+    private final double m_tick_rate_hz;
+    private final long m_tick_budget_ns;
+    private Task[] m_tasks = new Task[0];
+    private long m_tick = 0;
+
+    /**
+     *
+     * @param tick_rate_hz how often {@link #tick()} is called
+     * @param tick_budget_us time per tick after which non critical tasks are shed
+     */
+    public SubsystemScheduler(double tick_rate_hz, double tick_budget_us) {
+        m_tick_rate_hz = tick_rate_hz;
+        m_tick_budget_ns = (long) (tick_budget_us * 1000);
+    }
+
+    /**
+     * Schedules a subsystem's {@link Subsystem#update()}.
+     */
+    public void add(String name, Subsystem subsystem, double rate_hz, Priority priority, double budget_us) {
+        add(name, subsystem::update, rate_hz, priority, budget_us);
+    }
+
+    /**
+     *
+     * @param name name used in the summary
+     * @param task work to run once per period
+     * @param rate_hz runs per second, at most the tick rate
+     * @param priority tasks run in this order and only critical ones are never shed
+     * @param budget_us expected worst case run time, runs over it are counted
+     */
+    public void add(String name, Runnable task, double rate_hz, Priority priority, double budget_us) {
+        if(rate_hz <= 0 || rate_hz > m_tick_rate_hz) {
+            throw new IllegalArgumentException(name + ": rate must be in (0, " + m_tick_rate_hz + "] Hz");
+        }
+        int period_ticks = (int) Math.max(1, Math.round(m_tick_rate_hz / rate_hz));
+        int same_period = 0;
+        for(Task other : m_tasks) {
+            if(other.period_ticks == period_ticks) same_period++;
+        }
+        Task added = new Task(name, task, period_ticks, same_period % period_ticks, priority, (long) (budget_us * 1000));
+
+        // keep the array sorted by priority, registration order within a priority
+        Task[] tasks = new Task[m_tasks.length + 1];
+        int i = 0;
+        for(; i < m_tasks.length && m_tasks[i].priority.ordinal() <= priority.ordinal(); i++) tasks[i] = m_tasks[i];
+        tasks[i] = added;
+        for(; i < m_tasks.length; i++) tasks[i + 1] = m_tasks[i];
+        m_tasks = tasks;
+    }
+
+    /**
+     * Runs whatever is due this tick. Call once per robot loop.
+     */
+    public void tick() {
+        long tick_start = System.nanoTime();
+        for(Task task : m_tasks) {
+            if((m_tick - task.phase) % task.period_ticks == 0) {
+                if(task.due) task.missed++;
+                task.due = true;
+            }
+            if(!task.due) continue;
+
+            long start = System.nanoTime();
+            if(task.priority != Priority.CRITICAL && start - tick_start + task.budget_ns > m_tick_budget_ns) {
+                task.shed++;
+                continue;
+            }
+            task.runnable.run();
+            long duration = System.nanoTime() - start;
+            task.due = false;
+            task.runs++;
+            task.total_ns += duration;
+            task.max_ns = Math.max(task.max_ns, duration);
+            if(duration > task.budget_ns) task.over_budget++;
+        }
+        m_tick++;
+    }
+
+    /**
+     *
+     * @return one line per task with its run count, timing against its budget and how often it was shed
+     */
+    public String summarize() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Scheduler: %d ticks%n", m_tick));
+        for(Task task : m_tasks) {
+            out.append(String.format("  %-16s %4.0f Hz %-8s runs %d, mean %.1f us, max %.1f us, budget %.0f us, "
+                    + "over budget %d, shed %d, missed %d%n",
+                task.name, m_tick_rate_hz / task.period_ticks, task.priority.name().toLowerCase(), task.runs,
+                task.runs > 0 ? task.total_ns / 1e3 / task.runs : 0.0, task.max_ns / 1e3, task.budget_ns / 1e3,
+                task.over_budget, task.shed, task.missed));
+        }
+        return out.toString();
+    }
+
+    public long getTicks() {
+        return m_tick;
+    }
+
+    /**
+     * Clears the counters, the schedule itself carries on.
+     */
+    public void resetStats() {
+        for(Task task : m_tasks) {
+            task.runs = 0;
+            task.missed = 0;
+            task.shed = 0;
+            task.over_budget = 0;
+            task.total_ns = 0;
+            task.max_ns = 0;
+        }
+        m_tick = 0;
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.frc2018.telemetry;
+
+/**
+ * A named count of events, published by {@link DashboardPublisher} whenever it changes.
+ * Each counter must only be incremented from one thread.
+ */
+public final class Counter {
+
+    private final String m_name;
+    private volatile long m_count = 0;
+
+    // last count sent, only touched by the publisher thread
+    long m_published = -1;
+
+    Counter(String name) {
+        m_name = name;
+    }
+
+    public void increment() {
+        m_count = m_count + 1;
+    }
+
+    public void add(long amount) {
+        m_count = m_count + amount;
+    }
+
+    public long get() {
+        return m_count;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+}
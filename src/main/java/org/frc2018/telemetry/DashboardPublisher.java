@@ -0,0 +1,110 @@
+package org.frc2018.telemetry;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import org.frc2018.Constants;
+
+/**
+ * Sends the metrics in a {@link MetricsRegistry} to the SmartDashboard from a low priority
+ * background thread.
+ *
+ * Each pass a gauge is only sent if it has moved more than its deadband since the value
+ * last sent, and a counter only if it has changed, so a robot sitting still sends nothing.
+ * The robot loop never touches NetworkTables.
+ */
+public class DashboardPublisher {
+
+    private static DashboardPublisher m_instance = new DashboardPublisher();
+
+    public static DashboardPublisher getInstance() {
+        return m_instance;
+    }
+
+    private ScheduledExecutorService m_publisher = null;
+    private MetricsRegistry m_registry = null;
+
+    private volatile long m_published = 0;
+    private volatile long m_suppressed = 0;
+
+    private DashboardPublisher() {}
+
+    /**
+     * Publishes the shared registry at {@link Constants#DASHBOARD_RATE_HZ}.
+     */
+    public void start() {
+        start(MetricsRegistry.getInstance(), Constants.DASHBOARD_RATE_HZ);
+    }
+
+    /**
+     *
+     * @param registry metrics to publish
+     * @param rate_hz passes per second
+     */
+    public synchronized void start(MetricsRegistry registry, double rate_hz) {
+        if(m_publisher != null) return;
+        m_registry = registry;
+        m_publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-publisher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        long period_us = (long) (1e6 / rate_hz);
+        m_publisher.scheduleAtFixedRate(this::publish, period_us, period_us, TimeUnit.MICROSECONDS);
+    }
+
+    public synchronized void stop() {
+        if(m_publisher == null) return;
+        m_publisher.shutdownNow();
+        m_publisher = null;
+    }
+
+    private void publish() {
+        long published = 0;
+        long suppressed = 0;
+        for(Gauge gauge : m_registry.getGauges()) {
+            double value = gauge.get();
+            // NaN never compares, so the first value always goes out
+            if(!(Math.abs(value - gauge.m_published) <= gauge.getDeadband())) {
+                SmartDashboard.putNumber(gauge.getName(), value);
+                gauge.m_published = value;
+                published++;
+            } else {
+                suppressed++;
+            }
+        }
+        for(Counter counter : m_registry.getCounters()) {
+            long count = counter.get();
+            if(count != counter.m_published) {
+                SmartDashboard.putNumber(counter.getName(), count);
+                counter.m_published = count;
+                published++;
+            } else {
+                suppressed++;
+            }
+        }
+        m_published += published;
+        m_suppressed += suppressed;
+    }
+
+    /**
+     *
+     * @return values sent to the dashboard since startup
+     */
+    public long getPublished() {
+        return m_published;
+    }
+
+    /**
+     *
+     * @return values not sent because they had not changed enough
+     */
+    public long getSuppressed() {
+        return m_suppressed;
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.frc2018.telemetry;
+
+/**
+ * A named double set from the robot loop and read by {@link DashboardPublisher}.
+ * Setting it is one volatile write, the publisher decides what to send.
+ */
+public final class Gauge {
+
+    private final String m_name;
+    private final double m_deadband;
+    private volatile double m_value = 0;
+
+    // last value sent, only touched by the publisher thread
+    double m_published = Double.NaN;
+
+    Gauge(String name, double deadband) {
+        m_name = name;
+        m_deadband = deadband;
+    }
+
+    public void set(double value) {
+        m_value = value;
+    }
+
+    public double get() {
+        return m_value;
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     *
+     * @return smallest change worth publishing
+     */
+    public double getDeadband() {
+        return m_deadband;
+    }
+
+}
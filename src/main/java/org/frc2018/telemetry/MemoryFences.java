@@ -0,0 +1,75 @@
+package org.frc2018.telemetry;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+/**
+ * Load and store fences for memory shared with other processes, where Java's volatile
+ * fields can't be used. Java 8 only has these on sun.misc.Unsafe, which is looked up by
+ * reflection so nothing depends on it at compile time.
+ *
+ * There is no fallback. A volatile write doesn't keep plain stores after it from moving
+ * before it, so it can't stand in for a store fence. Without Unsafe the fences throw;
+ * check {@link #isNative()} before sharing memory.
+ */
+final class MemoryFences {
+
+    private static final MethodHandle STORE_FENCE;
+    private static final MethodHandle LOAD_FENCE;
+
+    static {
+        MethodHandle store = null;
+        MethodHandle load = null;
+        try {
+            Class<?> unsafe_class = Class.forName("sun.misc.Unsafe");
+            Field field = unsafe_class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            store = lookup.unreflect(unsafe_class.getMethod("storeFence")).bindTo(unsafe);
+            load = lookup.unreflect(unsafe_class.getMethod("loadFence")).bindTo(unsafe);
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            System.out.println("MemoryFences: no Unsafe fences (" + e + ")");
+            store = null;
+            load = null;
+        }
+        STORE_FENCE = store;
+        LOAD_FENCE = load;
+    }
+
+    private MemoryFences() {}
+
+    /**
+     * Stores before this can't be reordered with stores after it.
+     */
+    static void storeFence() {
+        if(STORE_FENCE == null) throw new IllegalStateException("no store fence on this JVM");
+        try {
+            STORE_FENCE.invokeExact();
+        } catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads before this can't be reordered with loads after it.
+     */
+    static void loadFence() {
+        if(LOAD_FENCE == null) throw new IllegalStateException("no load fence on this JVM");
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch(Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     *
+     * @return true if the Unsafe fences were found
+     */
+    static boolean isNative() {
+        return STORE_FENCE != null && LOAD_FENCE != null;
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.frc2018.telemetry;
+
+/**
+ * Holds every {@link Gauge} and {@link Counter} the subsystems register at startup.
+ *
+ * Registering allocates and takes a lock, so it belongs in robotInit. Names are the
+ * dashboard keys, asking for an existing name returns the metric already registered.
+ */
+public class MetricsRegistry {
+
+    private static MetricsRegistry m_instance = new MetricsRegistry();
+
+    public static MetricsRegistry getInstance() {
+        return m_instance;
+    }
+
+    private volatile Gauge[] m_gauges = new Gauge[0];
+    private volatile Counter[] m_counters = new Counter[0];
+
+    /**
+     *
+     * @param name dashboard key
+     * @param deadband smallest change worth publishing, in the gauge's units
+     * @return the gauge registered under name
+     */
+    public synchronized Gauge gauge(String name, double deadband) {
+        for(Gauge gauge : m_gauges) {
+            if(gauge.getName().equals(name)) return gauge;
+        }
+        Gauge[] gauges = new Gauge[m_gauges.length + 1];
+        System.arraycopy(m_gauges, 0, gauges, 0, m_gauges.length);
+        gauges[m_gauges.length] = new Gauge(name, deadband);
+        m_gauges = gauges;
+        return gauges[m_gauges.length - 1];
+    }
+
+    /**
+     *
+     * @param name dashboard key
+     * @return the counter registered under name
+     */
+    public synchronized Counter counter(String name) {
+        for(Counter counter : m_counters) {
+            if(counter.getName().equals(name)) return counter;
+        }
+        Counter[] counters = new Counter[m_counters.length + 1];
+        System.arraycopy(m_counters, 0, counters, 0, m_counters.length);
+        counters[m_counters.length] = new Counter(name);
+        m_counters = counters;
+        return counters[m_counters.length - 1];
+    }
+
+    Gauge[] getGauges() {
+        return m_gauges;
+    }
+
+    Counter[] getCounters() {
+        return m_counters;
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.frc2018.telemetry;
+
+/**
+ * Fixed capacity ring of telemetry samples for one client. Each sample is a
+ * row of doubles stored inline, so offering a sample never allocates. When
+ * the ring is full the oldest sample is overwritten and counted as dropped.
+ */
+public class SampleQueue {
+
+    private final double[] m_buffer;
+    private final int m_width;
+    private final int m_capacity;
+
+    private int m_head;
+    private int m_size;
+    private long m_dropped;
+
+    /**
+     *
+     * @param capacity maximum number of samples held before the oldest is dropped
+     * @param width number of values in each sample
+     */
+    public SampleQueue(int capacity, int width) {
+        m_capacity = capacity;
+        m_width = width;
+        m_buffer = new double[capacity * width];
+        m_head = 0;
+        m_size = 0;
+        m_dropped = 0;
+    }
+
+    /**
+     * Adds a sample, overwriting the oldest one if the queue is full.
+     *
+     * @param sample values to copy in, at least width long
+     */
+    public synchronized void offer(double[] sample) {
+        int slot;
+        if(m_size == m_capacity) {
+            slot = m_head;
+            m_head = (m_head + 1) % m_capacity;
+            m_dropped++;
+        } else {
+            slot = (m_head + m_size) % m_capacity;
+            m_size++;
+        }
+        System.arraycopy(sample, 0, m_buffer, slot * m_width, m_width);
+    }
+
+    /**
+     * Copies every queued sample into out, oldest first, and empties the queue.
+     * Only array copies happen while the lock is held so the publisher is never
+     * kept waiting on formatting.
+     *
+     * @param out destination, at least capacity * width long
+     * @return number of samples copied
+     */
+    public synchronized int drainTo(double[] out) {
+        int count = m_size;
+        int first = Math.min(count, m_capacity - m_head);
+        System.arraycopy(m_buffer, m_head * m_width, out, 0, first * m_width);
+        System.arraycopy(m_buffer, 0, out, first * m_width, (count - first) * m_width);
+        m_head = 0;
+        m_size = 0;
+        return count;
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    public int getWidth() {
+        return m_width;
+    }
+
+    public synchronized int size() {
+        return m_size;
+    }
+
+    public synchronized long getDropped() {
+        return m_dropped;
+    }
+
+}
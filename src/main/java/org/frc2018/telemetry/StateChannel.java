@@ -0,0 +1,185 @@
+package org.frc2018.telemetry;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.frc2018.Constants;
+
+/**
+ * Publishes the robot's state every tick into a memory mapped file, so other processes on
+ * the roboRIO, like a vision or logging daemon, can read it without sockets or
+ * serialization. {@link StateChannelReader} reads it from Java; the layout is fixed so a
+ * native process can map the same file.
+ *
+ * <pre>
+ * offset  type    native byte order
+ * 0       int     magic 'STCH'
+ * 4       int     version
+ * 8       int     number of fields n
+ * 12      int     unused
+ * 16      long    sequence
+ * 24      double  fields[n], in the order of the field constants below
+ * </pre>
+ *
+ * Writes follow a seqlock: the sequence is made odd, the fields written, then the sequence
+ * made even again, with store fences between. A reader copies the fields between two
+ * reads of the sequence and keeps the copy only if both were the same even number.
+ * Writing never waits on readers and a publish costs a few stores.
+ *
+ * The sequence starts again from 0 when the robot code restarts.
+ */
+public class StateChannel {
+
+    public static final int MAGIC = 0x48435453; // "STCH" read little endian
+    public static final int VERSION = 1;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int FIELDS_OFFSET = 24;
+
+    public static final int TIMESTAMP = 0;
+    public static final int X = 1;
+    public static final int Y = 2;
+    public static final int HEADING = 3;
+    public static final int LEFT_DISTANCE = 4;
+    public static final int RIGHT_DISTANCE = 5;
+    public static final int LEFT_VELOCITY = 6;
+    public static final int RIGHT_VELOCITY = 7;
+    public static final int LEFT_SETPOINT = 8;
+    public static final int RIGHT_SETPOINT = 9;
+    public static final int PATH_INDEX = 10;
+    public static final int PATH_LENGTH = 11;
+    public static final int MODE = 12;
+    public static final int FIELDS = 13;
+
+    private static StateChannel m_instance = new StateChannel();
+
+    /**
+     *
+     * @return the robot's state channel
+     */
+    public static StateChannel getInstance() {
+        return m_instance;
+    }
+
+    private MappedByteBuffer m_buffer = null;
+    private int m_fields = 0;
+    private long m_sequence = 0;
+
+    /**
+     * Opens {@link Constants#STATE_CHANNEL_PATH}.
+     */
+    public boolean start() {
+        return start(Constants.STATE_CHANNEL_PATH, FIELDS);
+    }
+
+    /**
+     * Maps the file, creating it if needed, and writes the header. Until this succeeds
+     * publishing does nothing.
+     *
+     * @param fields number of doubles in a record
+     * @return false if the file couldn't be mapped or the JVM has no memory fences, without
+     *         them readers could see torn records
+     */
+    public boolean start(String filepath, int fields) {
+        if(m_buffer != null) return true;
+        if(!MemoryFences.isNative()) {
+            System.out.println("StateChannel: no memory fences on this JVM, not publishing");
+            return false;
+        }
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FIELDS_OFFSET + 8L * fields);
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putLong(SEQUENCE_OFFSET, 0);
+            for(int i = 0; i < fields; i++) {
+                buffer.putDouble(FIELDS_OFFSET + 8 * i, 0);
+            }
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, fields);
+            buffer.putInt(12, 0);
+            MemoryFences.storeFence();
+            // readers check the magic last
+            buffer.putInt(0, MAGIC);
+            m_buffer = buffer;
+            m_fields = fields;
+            m_sequence = 0;
+            return true;
+        } catch(IOException e) {
+            System.out.println("StateChannel: can't map " + filepath + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isStarted() {
+        return m_buffer != null;
+    }
+
+    /**
+     * Writes a record. Only one thread may publish.
+     *
+     * @param values at least as many values as the channel has fields
+     */
+    public void publish(double[] values) {
+        MappedByteBuffer buffer = m_buffer;
+        if(buffer == null) return;
+        long sequence = m_sequence;
+        buffer.putLong(SEQUENCE_OFFSET, sequence + 1);
+        MemoryFences.storeFence();
+        for(int i = 0; i < m_fields; i++) {
+            buffer.putDouble(FIELDS_OFFSET + 8 * i, values[i]);
+        }
+        MemoryFences.storeFence();
+        buffer.putLong(SEQUENCE_OFFSET, sequence + 2);
+        m_sequence = sequence + 2;
+    }
+
+    /**
+     *
+     * @return sequence of the last record published, twice the number of records
+     */
+    public long getSequence() {
+        return m_sequence;
+    }
+
+    /**
+     * Test writer for trying a reader in another process. Publishes records whose fields
+     * all hold the record's number as fast as it can, or at a rate, so a torn read shows up
+     * as fields that differ. See {@link StateChannelReader#main}.
+     *
+     * Usage: StateChannel &lt;file&gt; [seconds] [records per second]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if(args.length < 1) {
+            System.err.println("usage: StateChannel <file> [seconds] [records per second]");
+            System.exit(2);
+        }
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10.0;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        StateChannel channel = new StateChannel();
+        if(!channel.start(args[0], FIELDS)) System.exit(1);
+
+        double[] values = new double[FIELDS];
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long period = rate > 0 ? (long) (1e9 / rate) : 0;
+        long records = 0;
+        long next = start;
+        while(System.nanoTime() < end) {
+            records++;
+            for(int i = 0; i < FIELDS; i++) values[i] = records;
+            channel.publish(values);
+            if(period > 0) {
+                next += period;
+                long sleep = next - System.nanoTime();
+                if(sleep > 0) Thread.sleep(sleep / 1000000, (int) (sleep % 1000000));
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("published %d records in %.1f s, %.0f ns per record%n", records, elapsed,
+            elapsed * 1e9 / records);
+    }
+
+}
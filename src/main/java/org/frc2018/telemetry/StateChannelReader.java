@@ -0,0 +1,159 @@
+package org.frc2018.telemetry;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.frc2018.Constants;
+
+/**
+ * Reads the records a {@link StateChannel} publishes, from any process on the same
+ * machine. A read copies the fields straight out of the mapped file and allocates nothing.
+ * A reader is not thread safe, give each thread its own.
+ */
+public class StateChannelReader {
+
+    private final MappedByteBuffer m_buffer;
+    private final int m_fields;
+    private long m_retries = 0;
+
+    /**
+     *
+     * @throws IOException if the file can't be mapped, no channel has been started in it or
+     *         the JVM has no memory fences to read it safely
+     */
+    public StateChannelReader(String filepath) throws IOException {
+        if(!MemoryFences.isNative()) {
+            throw new IOException(filepath + ": no memory fences on this JVM, reads could be torn");
+        }
+        try(FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            if(channel.size() < StateChannel.FIELDS_OFFSET) {
+                throw new IOException(filepath + ": too short for a state channel");
+            }
+            m_buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        m_buffer.order(ByteOrder.nativeOrder());
+        if(m_buffer.getInt(0) != StateChannel.MAGIC) {
+            throw new IOException(filepath + ": not a state channel");
+        }
+        MemoryFences.loadFence();
+        int version = m_buffer.getInt(4);
+        if(version != StateChannel.VERSION) {
+            throw new IOException(filepath + ": version " + version + ", expected " + StateChannel.VERSION);
+        }
+        m_fields = m_buffer.getInt(8);
+        if(m_fields < 0 || StateChannel.FIELDS_OFFSET + 8L * m_fields > m_buffer.capacity()) {
+            throw new IOException(filepath + ": " + m_fields + " fields don't fit in the file");
+        }
+    }
+
+    /**
+     * Copies the latest complete record.
+     *
+     * @param out receives the fields, at least {@link #getFieldCount()} long
+     * @return the record's sequence, or -1 if the writer was in the middle of a write every
+     *         one of {@link Constants#STATE_CHANNEL_READ_RETRIES} tries
+     */
+    public long read(double[] out) {
+        for(int attempt = 0; attempt < Constants.STATE_CHANNEL_READ_RETRIES; attempt++) {
+            long before = m_buffer.getLong(StateChannel.SEQUENCE_OFFSET);
+            if((before & 1) == 0) {
+                MemoryFences.loadFence();
+                for(int i = 0; i < m_fields; i++) {
+                    out[i] = m_buffer.getDouble(StateChannel.FIELDS_OFFSET + 8 * i);
+                }
+                MemoryFences.loadFence();
+                if(m_buffer.getLong(StateChannel.SEQUENCE_OFFSET) == before) {
+                    return before;
+                }
+            }
+            m_retries++;
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @return sequence of the last complete record, without reading it
+     */
+    public long getSequence() {
+        return m_buffer.getLong(StateChannel.SEQUENCE_OFFSET) & ~1L;
+    }
+
+    public int getFieldCount() {
+        return m_fields;
+    }
+
+    /**
+     *
+     * @return reads that had to start over because the writer was writing
+     */
+    public long getRetries() {
+        return m_retries;
+    }
+
+    /**
+     * Reads a channel in a loop. With --verify, expects the records of
+     * {@link StateChannel#main} and counts any whose fields differ, which would be a torn read.
+     *
+     * Usage: StateChannelReader &lt;file&gt; [seconds] [--verify]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("usage: StateChannelReader <file> [seconds] [--verify]");
+            System.exit(2);
+        }
+        double seconds = 10.0;
+        boolean verify = false;
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("--verify")) {
+                verify = true;
+            } else {
+                seconds = Double.parseDouble(args[i]);
+            }
+        }
+        StateChannelReader reader = new StateChannelReader(args[0]);
+        double[] record = new double[reader.getFieldCount()];
+
+        long reads = 0, failed = 0, torn = 0, new_records = 0, last_sequence = -1;
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long last_print = start;
+        while(true) {
+            long now = System.nanoTime();
+            if(now >= end) break;
+            long sequence = reader.read(record);
+            reads++;
+            if(sequence < 0) {
+                failed++;
+                continue;
+            }
+            if(sequence != last_sequence) {
+                new_records++;
+                last_sequence = sequence;
+            }
+            if(verify) {
+                for(int i = 1; i < record.length; i++) {
+                    if(record[i] != record[0]) {
+                        torn++;
+                        break;
+                    }
+                }
+            } else if(now - last_print > 1000000000L) {
+                last_print = now;
+                StringBuilder line = new StringBuilder("seq " + sequence + ":");
+                for(double value : record) line.append(String.format(" %.3f", value));
+                System.out.println(line);
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d reads in %.1f s, %.0f ns per read, %d new records, %d retries, %d failed%s%n",
+            reads, elapsed, elapsed * 1e9 / reads, new_records, reader.getRetries(), failed,
+            verify ? ", " + torn + " torn" : "");
+        if(torn > 0) System.exit(1);
+    }
+
+}
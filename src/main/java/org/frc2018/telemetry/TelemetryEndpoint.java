@@ -0,0 +1,32 @@
+package org.frc2018.telemetry;
+
+import javax.websocket.CloseReason;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnOpen;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpoint;
+
+/**
+ * WebSocket endpoint that registers each connection with the {@link TelemetryServer}.
+ * Clients only receive, anything they send is ignored.
+ */
+@ServerEndpoint(TelemetryServer.ENDPOINT_PATH)
+public class TelemetryEndpoint {
+
+    @OnOpen
+    public void onOpen(Session session) {
+        TelemetryServer.getInstance().addClient(session);
+    }
+
+    @OnClose
+    public void onClose(Session session, CloseReason reason) {
+        TelemetryServer.getInstance().removeClient(session);
+    }
+
+    @OnError
+    public void onError(Session session, Throwable error) {
+        TelemetryServer.getInstance().removeClient(session);
+    }
+
+}
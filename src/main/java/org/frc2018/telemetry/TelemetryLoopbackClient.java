@@ -0,0 +1,91 @@
+package org.frc2018.telemetry;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.ClientEndpoint;
+import javax.websocket.OnMessage;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+/**
+ * Runs the telemetry server locally, feeds it a synthetic 200 Hz sample stream and
+ * connects a fast and a deliberately stalled client over loopback. Prints how many
+ * frames and samples each client saw and how many samples were dropped for the slow one.
+ *
+ * Usage: TelemetryLoopbackClient [port] [seconds]
+ */
+public class TelemetryLoopbackClient {
+
+    @ClientEndpoint
+    public static class CountingClient {
+        private final long m_stall_ms;
+        final AtomicLong frames = new AtomicLong();
+        final AtomicLong chars = new AtomicLong();
+        volatile String last_frame = "";
+
+        public CountingClient(long stall_ms) {
+            m_stall_ms = stall_ms;
+        }
+
+        @OnMessage
+        public void onMessage(String frame) {
+            frames.incrementAndGet();
+            chars.addAndGet(frame.length());
+            last_frame = frame;
+            if(m_stall_ms > 0) {
+                try {
+                    Thread.sleep(m_stall_ms);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5800;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3.0;
+
+        TelemetryServer server = TelemetryServer.getInstance();
+        server.start(port, 20, 100);
+
+        ClientManager manager = ClientManager.createClient();
+        URI uri = new URI("ws://localhost:" + port + TelemetryServer.ENDPOINT_PATH);
+        CountingClient fast = new CountingClient(0);
+        CountingClient slow = new CountingClient(500);
+        Session fast_session = manager.connectToServer(fast, uri);
+        Session slow_session = manager.connectToServer(slow, uri);
+
+        long start = System.nanoTime();
+        long ticks = 0;
+        long worst_publish_ns = 0;
+        long total_publish_ns = 0;
+        while(System.nanoTime() - start < (long) (seconds * 1e9)) {
+            double t = ticks * 0.005;
+            long before = System.nanoTime();
+            server.publish(t, Math.sin(t) * 50, t * 10, t * 5 % 360, (int) ticks % 100, 100,
+                60, 62, 59, 61, 4);
+            long elapsed = System.nanoTime() - before;
+            worst_publish_ns = Math.max(worst_publish_ns, elapsed);
+            total_publish_ns += elapsed;
+            ticks++;
+            Thread.sleep(5);
+        }
+
+        fast_session.close();
+        slow_session.close();
+        server.stop();
+
+        System.out.printf("published %d samples, mean publish %.2f us, worst %.1f us%n", ticks,
+            total_publish_ns / 1e3 / ticks, worst_publish_ns / 1e3);
+        System.out.printf("fast client: %d frames, %d chars%n", fast.frames.get(), fast.chars.get());
+        System.out.printf("slow client: %d frames, last frame header %s%n", slow.frames.get(),
+            slow.last_frame.substring(0, Math.min(slow.last_frame.length(), 200)));
+        System.out.printf("server: %d frames sent, %d skipped for busy clients%n",
+            server.getFramesSent(), server.getFramesSkipped());
+        System.exit(fast.frames.get() > 0 ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,230 @@
+package org.frc2018.telemetry;
+
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.websocket.DeploymentException;
+import javax.websocket.Session;
+
+import org.glassfish.tyrus.server.Server;
+
+import org.frc2018.Constants;
+
+/**
+ * Embedded WebSocket server that streams drive telemetry to a pit laptop.
+ *
+ * The robot loop calls {@link #publish} once per tick. Samples are copied into
+ * a bounded queue per connected client and a background thread sends every
+ * queue as one JSON frame at the configured frame rate. A client that has not
+ * finished receiving its previous frame is skipped, and its queue drops the
+ * oldest samples, so a slow browser never blocks the robot loop.
+ *
+ * Frames look like {"fields":[...],"dropped":n,"samples":[[...],...]}.
+ */
+public class TelemetryServer {
+
+    public static final String ENDPOINT_PATH = "/telemetry";
+
+    public static final int TIMESTAMP = 0;
+    public static final int X = 1;
+    public static final int Y = 2;
+    public static final int HEADING = 3;
+    public static final int PATH_INDEX = 4;
+    public static final int PATH_LENGTH = 5;
+    public static final int LEFT_SETPOINT = 6;
+    public static final int RIGHT_SETPOINT = 7;
+    public static final int LEFT_VELOCITY = 8;
+    public static final int RIGHT_VELOCITY = 9;
+    public static final int MODE = 10;
+    public static final int SAMPLE_WIDTH = 11;
+
+    private static final String FIELDS_JSON = "[\"timestamp\",\"x\",\"y\",\"heading\",\"path_index\",\"path_length\","
+        + "\"left_setpoint\",\"right_setpoint\",\"left_velocity\",\"right_velocity\",\"mode\"]";
+
+    private static TelemetryServer m_instance = new TelemetryServer();
+
+    /**
+     *
+     * @return the shared telemetry server
+     */
+    public static TelemetryServer getInstance() {
+        return m_instance;
+    }
+
+    private static class Client {
+        final Session session;
+        final SampleQueue queue;
+        Future<Void> pending_send;
+
+        Client(Session session, int capacity) {
+            this.session = session;
+            this.queue = new SampleQueue(capacity, SAMPLE_WIDTH);
+            this.pending_send = null;
+        }
+    }
+
+    private final Object m_clients_lock = new Object();
+    private volatile Client[] m_clients = new Client[0];
+
+    private final double[] m_sample = new double[SAMPLE_WIDTH];
+    private final StringBuilder m_frame = new StringBuilder(4096);
+    private double[] m_drained = new double[0];
+
+    private Server m_server = null;
+    private ScheduledExecutorService m_sender = null;
+    private int m_queue_capacity = Constants.TELEMETRY_QUEUE_CAPACITY;
+
+    private long m_frames_sent = 0;
+    private long m_frames_skipped = 0;
+
+    private TelemetryServer() {}
+
+    /**
+     * Starts the server with the port, frame rate and queue size from {@link Constants}.
+     */
+    public void start() {
+        start(Constants.TELEMETRY_PORT, Constants.TELEMETRY_FRAME_RATE_HZ, Constants.TELEMETRY_QUEUE_CAPACITY);
+    }
+
+    /**
+     *
+     * @param port tcp port to listen on
+     * @param frame_rate_hz frames sent to each client per second
+     * @param queue_capacity samples buffered per client before the oldest are dropped
+     */
+    public synchronized void start(int port, double frame_rate_hz, int queue_capacity) {
+        if(m_server != null) return;
+        m_queue_capacity = queue_capacity;
+        Server server = new Server("0.0.0.0", port, "/", new HashMap<String, Object>(), TelemetryEndpoint.class);
+        try {
+            server.start();
+        } catch(DeploymentException e) {
+            e.printStackTrace();
+            return;
+        }
+        m_server = server;
+
+        m_sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "telemetry-sender");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        long period_us = (long) (1e6 / frame_rate_hz);
+        m_sender.scheduleAtFixedRate(this::sendFrames, period_us, period_us, TimeUnit.MICROSECONDS);
+    }
+
+    public synchronized void stop() {
+        if(m_server == null) return;
+        m_sender.shutdownNow();
+        m_sender = null;
+        m_server.stop();
+        m_server = null;
+        synchronized(m_clients_lock) {
+            m_clients = new Client[0];
+        }
+    }
+
+    public boolean isRunning() {
+        return m_server != null;
+    }
+
+    /**
+     * Queues one sample for every connected client. Called from the robot loop,
+     * does not allocate and does not touch the network.
+     */
+    public void publish(double timestamp, double x, double y, double heading, int path_index, int path_length,
+            double left_setpoint, double right_setpoint, double left_velocity, double right_velocity, int mode) {
+        Client[] clients = m_clients;
+        if(clients.length == 0) return;
+        double[] sample = m_sample;
+        sample[TIMESTAMP] = timestamp;
+        sample[X] = x;
+        sample[Y] = y;
+        sample[HEADING] = heading;
+        sample[PATH_INDEX] = path_index;
+        sample[PATH_LENGTH] = path_length;
+        sample[LEFT_SETPOINT] = left_setpoint;
+        sample[RIGHT_SETPOINT] = right_setpoint;
+        sample[LEFT_VELOCITY] = left_velocity;
+        sample[RIGHT_VELOCITY] = right_velocity;
+        sample[MODE] = mode;
+        for(Client client : clients) {
+            client.queue.offer(sample);
+        }
+    }
+
+    private void sendFrames() {
+        for(Client client : m_clients) {
+            if(client.pending_send != null && !client.pending_send.isDone()) {
+                // still writing the last frame, let the queue absorb the backlog
+                m_frames_skipped++;
+                continue;
+            }
+            if(client.queue.size() == 0 || !client.session.isOpen()) continue;
+            if(m_drained.length < client.queue.getCapacity() * SAMPLE_WIDTH) {
+                m_drained = new double[client.queue.getCapacity() * SAMPLE_WIDTH];
+            }
+            int count = client.queue.drainTo(m_drained);
+            m_frame.setLength(0);
+            m_frame.append("{\"fields\":").append(FIELDS_JSON);
+            m_frame.append(",\"dropped\":").append(client.queue.getDropped());
+            m_frame.append(",\"samples\":[");
+            for(int i = 0; i < count; i++) {
+                if(i > 0) m_frame.append(',');
+                m_frame.append('[');
+                for(int j = 0; j < SAMPLE_WIDTH; j++) {
+                    if(j > 0) m_frame.append(',');
+                    m_frame.append(m_drained[i * SAMPLE_WIDTH + j]);
+                }
+                m_frame.append(']');
+            }
+            m_frame.append("]}");
+            try {
+                client.pending_send = client.session.getAsyncRemote().sendText(m_frame.toString());
+                m_frames_sent++;
+            } catch(RuntimeException e) {
+                removeClient(client.session);
+            }
+        }
+    }
+
+    void addClient(Session session) {
+        synchronized(m_clients_lock) {
+            Client[] clients = new Client[m_clients.length + 1];
+            System.arraycopy(m_clients, 0, clients, 0, m_clients.length);
+            clients[m_clients.length] = new Client(session, m_queue_capacity);
+            m_clients = clients;
+        }
+    }
+
+    void removeClient(Session session) {
+        synchronized(m_clients_lock) {
+            int index = -1;
+            for(int i = 0; i < m_clients.length; i++) {
+                if(m_clients[i].session == session) index = i;
+            }
+            if(index < 0) return;
+            Client[] clients = new Client[m_clients.length - 1];
+            System.arraycopy(m_clients, 0, clients, 0, index);
+            System.arraycopy(m_clients, index + 1, clients, index, m_clients.length - index - 1);
+            m_clients = clients;
+        }
+    }
+
+    public int getClientCount() {
+        return m_clients.length;
+    }
+
+    public long getFramesSent() {
+        return m_frames_sent;
+    }
+
+    public long getFramesSkipped() {
+        return m_frames_skipped;
+    }
+
+}